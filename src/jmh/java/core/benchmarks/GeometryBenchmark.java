@@ -0,0 +1,85 @@
+package core.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Geometry;
+import core.ImmutableTimeline;
+import core.ResizeableTimeline;
+import core.Timeline;
+import core.Timelines;
+
+/**
+ * Geometry of both kinds of Timeline, through the allocating methods and
+ * the ones writing into a buffer.
+ *
+ * @author kr0
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class GeometryBenchmark {
+
+	@Param({ "8", "64", "512", "4096" })
+	int pulses;
+
+	@Param({ "immutable", "resizeable" })
+	String kind;
+
+	private Timeline timeline;
+	private int[] buffer;
+
+	@Setup
+	public void setUp() {
+		int[] ioi = Geometry.interOnsetIntervalArray(Timelines.euclidean(Rhythms.onsets(pulses), pulses));
+		timeline = kind.equals("immutable") ? new ImmutableTimeline(ioi) : new ResizeableTimeline(ioi);
+		buffer = new int[timeline.getNumberOfOnsets()];
+	}
+
+	@Benchmark
+	public int interOnsetIntervals() {
+		return Geometry.interOnsetIntervals(timeline, buffer);
+	}
+
+	@Benchmark
+	public int[] interOnsetIntervalArray() {
+		return Geometry.interOnsetIntervalArray(timeline);
+	}
+
+	@Benchmark
+	public int rhythmicContour() {
+		return Geometry.rhythmicContour(timeline, buffer);
+	}
+
+	@Benchmark
+	public List<Integer> rhythmicContourList() {
+		return Geometry.rhythmicContour(timeline);
+	}
+
+	@Benchmark
+	public String boxNotation() {
+		return Geometry.boxNotation(timeline);
+	}
+
+	@Benchmark
+	public int[] intervalVector() {
+		return Geometry.intervalVector(timeline);
+	}
+
+}
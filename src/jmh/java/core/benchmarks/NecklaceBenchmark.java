@@ -0,0 +1,97 @@
+package core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Necklace;
+import core.Pulse;
+import core.PulseNecklace;
+import core.Timelines;
+
+/**
+ * Edits of a generic and a packed necklace of pulses. Every benchmark that
+ * changes the size of the necklace changes it back, so the necklace is the
+ * same size at every invocation.
+ *
+ * @author kr0
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class NecklaceBenchmark {
+
+	@Param({ "8", "64", "512", "4096" })
+	int pulses;
+
+	@Param({ "generic", "packed" })
+	String kind;
+
+	private Necklace<Pulse> necklace;
+	private int middle;
+
+	@Setup
+	public void setUp() {
+		Necklace<Pulse> rhythm = Timelines.euclidean(Rhythms.onsets(pulses), pulses).getNecklace();
+		necklace = kind.equals("packed") ? new PulseNecklace(rhythm) : new Necklace<Pulse>(rhythm);
+		middle = pulses / 2;
+	}
+
+	@Benchmark
+	public Necklace<Pulse> appendAndRemove() {
+		necklace.add(Pulse.ATTACK);
+		necklace.remove(necklace.size() - 1);
+		return necklace;
+	}
+
+	@Benchmark
+	public Necklace<Pulse> insertAndRemove() {
+		necklace.add(Pulse.ATTACK, middle);
+		necklace.remove(middle);
+		return necklace;
+	}
+
+	@Benchmark
+	public Necklace<Pulse> extendAndShrink() {
+		necklace.extend(middle, Pulse.REST, 4);
+		necklace.removeRange(middle + 1, middle + 4);
+		necklace.extend(middle, Pulse.REST, 1);
+		necklace.shrink(middle + 1, middle + 1);
+		return necklace;
+	}
+
+	@Benchmark
+	public Necklace<Pulse> rotateBy() {
+		necklace.rotateBy(1);
+		return necklace;
+	}
+
+	@Benchmark
+	public Necklace<Pulse> rotateByThenInsert() {
+		// the first size changing edit after a rotation applies it
+		necklace.rotateBy(1);
+		necklace.add(Pulse.ATTACK, middle);
+		necklace.remove(middle);
+		return necklace;
+	}
+
+	@Benchmark
+	public Necklace<Pulse> rotatedCopy() {
+		return necklace.rotated(1);
+	}
+
+}
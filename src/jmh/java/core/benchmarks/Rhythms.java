@@ -0,0 +1,21 @@
+package core.benchmarks;
+
+/**
+ * Shared sizes for the benchmarks.
+ *
+ * @author kr0
+ *
+ */
+final class Rhythms {
+
+	private Rhythms() {
+	}
+
+	/**
+	 * The number of onsets of a benchmark rhythm, as dense as the tresillo.
+	 */
+	static int onsets(int pulses) {
+		return Math.max(1, pulses * 3 / 8);
+	}
+
+}
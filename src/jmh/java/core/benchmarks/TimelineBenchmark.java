@@ -0,0 +1,113 @@
+package core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Geometry;
+import core.ImmutableTimeline;
+import core.ResizeableTimeline;
+import core.Timeline;
+import core.TimelineBuilder;
+import core.Timelines;
+
+/**
+ * Building, editing and rotating both kinds of Timeline. Each edit inserts
+ * an onset, removes it and restores the onset before it, so the mutable
+ * timeline is the same at every invocation.
+ *
+ * @author kr0
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class TimelineBenchmark {
+
+	@Param({ "8", "64", "512", "4096" })
+	int pulses;
+
+	private int[] interOnsetIntervals;
+	private ImmutableTimeline immutable;
+	private ResizeableTimeline resizeable;
+	// an onset in the middle, where it starts and the length of the one before
+	private int onset;
+	private int start;
+	private int previousDuration;
+
+	@Setup
+	public void setUp() {
+		interOnsetIntervals = Geometry.interOnsetIntervalArray(Timelines.euclidean(Rhythms.onsets(pulses), pulses));
+		immutable = new ImmutableTimeline(interOnsetIntervals);
+		resizeable = new ResizeableTimeline(interOnsetIntervals);
+		onset = Math.max(1, interOnsetIntervals.length / 2);
+		start = immutable.onsetStart(onset);
+		previousDuration = interOnsetIntervals[onset - 1];
+	}
+
+	@Benchmark
+	public Timeline buildImmutable() {
+		return new ImmutableTimeline(interOnsetIntervals);
+	}
+
+	@Benchmark
+	public Timeline buildResizeable() {
+		return new ResizeableTimeline(interOnsetIntervals);
+	}
+
+	@Benchmark
+	public Timeline buildWithBuilder() {
+		return new TimelineBuilder(interOnsetIntervals.length).addOnsets(interOnsetIntervals).buildImmutable();
+	}
+
+	@Benchmark
+	public Timeline editImmutable() {
+		Timeline t = immutable.insertOnset(start, 1, false);
+		t = ((ImmutableTimeline) t).removeOnset(onset);
+		return ((ImmutableTimeline) t).replaceOnset(onset - 1, previousDuration, false);
+	}
+
+	@Benchmark
+	public Timeline editResizeable() {
+		resizeable.insertOnset(start, 1, false);
+		resizeable.removeOnset(onset);
+		resizeable.replaceOnset(onset - 1, previousDuration, false);
+		return resizeable;
+	}
+
+	@Benchmark
+	public Timeline replaceResizeable() {
+		resizeable.replaceOnset(onset, 3, true);
+		resizeable.replaceOnset(onset, interOnsetIntervals[onset], false);
+		return resizeable;
+	}
+
+	@Benchmark
+	public int onsetAtResizeable() {
+		return resizeable.onsetAt(start);
+	}
+
+	@Benchmark
+	public Timeline rotateImmutable() {
+		return Timelines.rotate(immutable, 1);
+	}
+
+	@Benchmark
+	public Timeline rotateResizeable() {
+		return Timelines.rotate(resizeable, 1);
+	}
+
+}
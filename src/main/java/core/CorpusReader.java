@@ -0,0 +1,226 @@
+package core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a corpus written by CorpusWriter. The file is memory-mapped a window
+ * at a time and Timelines are decoded lazily as they are iterated, so only
+ * the current window and the current Timeline are ever in memory. Every
+ * Timeline read is an ImmutableTimeline. <br>
+ * Each call to iterator() or stream() starts again from the first Timeline;
+ * separate iterators may be used from separate threads.
+ *
+ * @author kr0
+ *
+ */
+public class CorpusReader implements Closeable, Iterable<Timeline> {
+
+	static final int DEFAULT_WINDOW = 1 << 26;
+	private static final int HEADER = 5;
+
+	private final FileChannel channel;
+	private final long size;
+	private final int window;
+
+	/**
+	 * Opens a corpus file and checks its header.
+	 * @param file
+	 * @throws IOException
+	 *             if the file is not a corpus of a known version
+	 */
+	public CorpusReader(Path file) throws IOException {
+		this(file, DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Opens a corpus file, mapping at most window bytes at a time.
+	 * @param file
+	 * @param window
+	 * @throws IOException
+	 */
+	public CorpusReader(Path file, int window) throws IOException {
+		if (window < 1) {
+			throw new IllegalArgumentException("Window must be at least one byte.");
+		}
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.size = channel.size();
+		this.window = window;
+		try {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, HEADER));
+			for (byte b : CorpusWriter.MAGIC) {
+				if (!header.hasRemaining() || header.get() != b) {
+					throw new IOException(file + " is not a rhythm corpus.");
+				}
+			}
+			if (!header.hasRemaining() || header.get() != CorpusWriter.VERSION) {
+				throw new IOException(file + " has an unsupported corpus version.");
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Iterates over the Timelines of this corpus. I/O errors are rethrown as
+	 * UncheckedIOException.
+	 */
+	@Override
+	public Iterator<Timeline> iterator() {
+		return new Cursor();
+	}
+
+	/**
+	 * A sequential stream of the Timelines of this corpus.
+	 * @return
+	 */
+	public Stream<Timeline> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private final class Cursor implements Iterator<Timeline> {
+		private MappedByteBuffer buffer;
+		// file position of buffer[0]
+		private long base = HEADER;
+		private int[] durations = new int[16];
+		private boolean[] accents = new boolean[16];
+
+		@Override
+		public boolean hasNext() {
+			return position() < size;
+		}
+
+		@Override
+		public Timeline next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			try {
+				return read();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private Timeline read() throws IOException {
+			int n = readVarint();
+			int k = readVarint();
+			int first = readVarint();
+			int tag = readVarint();
+			if (n < 0 || k < 0 || first < 0 || k > n || (k > 0 && first >= n)) {
+				throw new IOException("Corrupt record at " + position() + ".");
+			}
+			if (durations.length < k) {
+				durations = new int[Math.max(k, durations.length * 2)];
+				accents = new boolean[durations.length];
+			}
+			if ((tag & CorpusWriter.TAG_BITSET) != 0) {
+				readPulses(n, k, first);
+			} else {
+				long sum = 0;
+				for (int i = 0; i < k; i++) {
+					durations[i] = readVarint();
+					if (durations[i] < 1) {
+						throw new IOException("Corrupt record at " + position() + ".");
+					}
+					sum += durations[i];
+				}
+				if (k > 0 && sum != n) {
+					throw new IOException("Corrupt record at " + position() + ".");
+				}
+			}
+			if ((tag & CorpusWriter.TAG_ACCENTS) != 0) {
+				for (int b = 0; b < (k + 7) >>> 3; b++) {
+					int value = readByte();
+					for (int j = 0; j < 8 && (b << 3) + j < k; j++) {
+						accents[(b << 3) + j] = (value & (1 << j)) != 0;
+					}
+				}
+			} else {
+				Arrays.fill(accents, 0, k, false);
+			}
+			if (k == 0) {
+				return new ImmutableTimeline(null, 0, n);
+			}
+			return new ImmutableTimeline(OnsetTree.build(durations, accents, 0, k), first, n);
+		}
+
+		/**
+		 * Turns a bitset of onset pulses into inter-onset intervals. The
+		 * first pulse of the bitset must be the first of the header.
+		 */
+		private void readPulses(int n, int k, int first) throws IOException {
+			int count = 0;
+			int previous = 0;
+			for (int b = 0; b < (n + 7) >>> 3; b++) {
+				int value = readByte();
+				while (value != 0) {
+					int pulse = (b << 3) + Integer.numberOfTrailingZeros(value);
+					value &= value - 1;
+					if (count == k || pulse >= n || (count == 0 && pulse != first)) {
+						throw new IOException("Corrupt record at " + position() + ".");
+					}
+					if (count > 0) {
+						durations[count - 1] = pulse - previous;
+					}
+					previous = pulse;
+					count++;
+				}
+			}
+			if (count != k) {
+				throw new IOException("Corrupt record at " + position() + ".");
+			}
+			if (k > 0) {
+				durations[k - 1] = first + n - previous;
+			}
+		}
+
+		private int readVarint() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				int b = readByte();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("Corrupt varint at " + position() + ".");
+		}
+
+		private int readByte() throws IOException {
+			if (buffer == null || !buffer.hasRemaining()) {
+				long at = position();
+				if (at >= size) {
+					throw new IOException("Unexpected end of corpus.");
+				}
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, at, Math.min(window, size - at));
+				base = at;
+			}
+			return buffer.get() & 0xFF;
+		}
+
+		private long position() {
+			return buffer == null ? base : base + buffer.position();
+		}
+	}
+
+}
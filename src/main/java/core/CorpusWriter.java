@@ -0,0 +1,167 @@
+package core;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes Timelines to a stream in the binary corpus format read by
+ * CorpusReader. <br>
+ * The stream starts with the magic bytes "GORC" and a version byte. Each
+ * Timeline is then a record of unsigned varints: the number of pulses, the
+ * number of onsets, the pulse of the first onset and a tag. The tag says
+ * whether the onsets follow as varint inter-onset intervals or as a bitset of
+ * pulses, whichever is shorter, and whether an accent bitset (one bit per
+ * onset) follows them.
+ *
+ * @author kr0
+ *
+ */
+public class CorpusWriter implements Closeable, Flushable {
+
+	static final byte[] MAGIC = "GORC".getBytes(StandardCharsets.US_ASCII);
+	static final int VERSION = 1;
+	static final int TAG_BITSET = 1;
+	static final int TAG_ACCENTS = 2;
+
+	private final OutputStream out;
+	private final byte[] buffer = new byte[1 << 16];
+	private int count;
+	private int[] positions = new int[16];
+	private long written;
+
+	/**
+	 * Writes the header to out. The stream is closed with this writer.
+	 * @param out
+	 * @throws IOException
+	 */
+	public CorpusWriter(OutputStream out) throws IOException {
+		this.out = out;
+		out.write(MAGIC);
+		out.write(VERSION);
+	}
+
+	/**
+	 * Appends a Timeline to the corpus.
+	 * @param t
+	 * @throws IOException
+	 */
+	public void write(Timeline t) throws IOException {
+		int n = t.getNumberOfPulses();
+		int k = t.getNumberOfOnsets();
+		if (positions.length < k) {
+			positions = new int[Math.max(k, positions.length * 2)];
+		}
+		k = t.copyOnsetPositions(positions);
+
+		boolean accents = false;
+		int intervalBytes = 0;
+		for (int i = 0; i < k; i++) {
+			accents |= t.pulseAt(positions[i]) == Pulse.ACCENT;
+			intervalBytes += varintSize(interval(i, k, n));
+		}
+		int bitsetBytes = (n + 7) >>> 3;
+		boolean bitset = bitsetBytes < intervalBytes;
+		int tag = (bitset ? TAG_BITSET : 0) | (accents ? TAG_ACCENTS : 0);
+
+		// 4 varints of at most 5 bytes each
+		ensure(20);
+		writeVarint(n);
+		writeVarint(k);
+		writeVarint(k == 0 ? 0 : positions[0]);
+		writeVarint(tag);
+		if (bitset) {
+			writePulses(k, bitsetBytes);
+		} else {
+			for (int i = 0; i < k; i++) {
+				ensure(5);
+				writeVarint(interval(i, k, n));
+			}
+		}
+		if (accents) {
+			writeAccents(t, k);
+		}
+		written++;
+	}
+
+	/**
+	 * Number of Timelines written so far.
+	 * @return
+	 */
+	public long count() {
+		return written;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.write(buffer, 0, count);
+		count = 0;
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	private int interval(int i, int k, int n) {
+		return (i + 1 < k ? positions[i + 1] : positions[0] + n) - positions[i];
+	}
+
+	/**
+	 * Writes a bitset of the pulses with an onset, least significant bit
+	 * first.
+	 */
+	private void writePulses(int k, int bytes) throws IOException {
+		int i = 0;
+		for (int b = 0; b < bytes; b++) {
+			ensure(1);
+			int value = 0;
+			while (i < k && positions[i] >>> 3 == b) {
+				value |= 1 << (positions[i] & 7);
+				i++;
+			}
+			buffer[count++] = (byte) value;
+		}
+	}
+
+	private void writeAccents(Timeline t, int k) throws IOException {
+		int bytes = (k + 7) >>> 3;
+		for (int b = 0; b < bytes; b++) {
+			ensure(1);
+			int value = 0;
+			for (int j = 0; j < 8 && (b << 3) + j < k; j++) {
+				if (t.pulseAt(positions[(b << 3) + j]) == Pulse.ACCENT) {
+					value |= 1 << j;
+				}
+			}
+			buffer[count++] = (byte) value;
+		}
+	}
+
+	private void writeVarint(int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[count++] = (byte) value;
+	}
+
+	private void ensure(int bytes) throws IOException {
+		if (count + bytes > buffer.length) {
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+
+	private static int varintSize(int value) {
+		return 1 + (31 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+	}
+
+}
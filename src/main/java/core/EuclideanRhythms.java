@@ -0,0 +1,96 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Generates Euclidean rhythms E(k,n) and keeps the most recently generated
+ * ones in a small direct-mapped cache. A lookup that hits the cache does not
+ * allocate; a miss generates the rhythm in O(n) and replaces whatever shared
+ * its slot. The cache is safe to use from any number of threads since its
+ * entries are immutable.
+ *
+ * @author kr0
+ *
+ */
+final class EuclideanRhythms {
+
+	private static final int CACHE_BITS = 10;
+	// pulses, onsets and rotation are packed into 21 bits each
+	private static final int MAX_CACHED_PULSES = 1 << 21;
+
+	private static final AtomicReferenceArray<Entry> CACHE =
+			new AtomicReferenceArray<>(1 << CACHE_BITS);
+
+	private static final class Entry {
+		final long key;
+		final ImmutableTimeline timeline;
+
+		Entry(long key, ImmutableTimeline timeline) {
+			this.key = key;
+			this.timeline = timeline;
+		}
+	}
+
+	/**
+	 * Returns E(onsets, pulses) rotated by rotation pulses.
+	 * @param onsets
+	 * @param pulses
+	 * @param rotation
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	static ImmutableTimeline get(int onsets, int pulses, int rotation)
+			throws IllegalArgumentException {
+		if (pulses < 1) {
+			throw new IllegalArgumentException("A Euclidean rhythm needs at least one pulse.");
+		}
+		if (onsets < 0 || onsets > pulses) {
+			throw new IllegalArgumentException("Number of onsets must be between 0 and " + pulses + ".");
+		}
+		rotation = Math.floorMod(rotation, pulses);
+		if (pulses >= MAX_CACHED_PULSES) {
+			return generate(onsets, pulses, rotation);
+		}
+
+		long key = ((long) pulses << 42) | ((long) onsets << 21) | rotation;
+		int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - CACHE_BITS));
+		Entry entry = CACHE.get(slot);
+		if (entry != null && entry.key == key) {
+			return entry.timeline;
+		}
+		ImmutableTimeline t = generate(onsets, pulses, rotation);
+		CACHE.lazySet(slot, new Entry(key, t));
+		return t;
+	}
+
+	/**
+	 * Bresenham's line drawing places onset i at the first pulse p with
+	 * p * onsets / pulses >= i. The result is a rotation of the rhythm
+	 * produced by Bjorklund's algorithm, starting with an onset.
+	 */
+	private static ImmutableTimeline generate(int onsets, int pulses, int rotation) {
+		if (onsets == 0) {
+			return new ImmutableTimeline(null, 0, pulses);
+		}
+		int[] durations = new int[onsets];
+		int count = 0;
+		int previous = 0;
+		int error = 0;
+		for (int p = 0; p < pulses; p++) {
+			if (error < onsets) {
+				if (count > 0) {
+					durations[count - 1] = p - previous;
+				}
+				count++;
+				previous = p;
+			}
+			error += onsets;
+			if (error >= pulses) {
+				error -= pulses;
+			}
+		}
+		durations[onsets - 1] = pulses - previous;
+		return new ImmutableTimeline(OnsetTree.build(durations, null, 0, onsets), rotation, pulses);
+	}
+
+}
@@ -0,0 +1,103 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * A binary indexed tree over a list of positive ints, such as the durations
+ * of the onsets of a timeline. Finds the sum of any prefix, and the entry
+ * whose span holds a given offset, in O(log n).
+ *
+ * @author kr0
+ *
+ */
+final class FenwickTree {
+
+	// tree[i] is the sum of values (i - lowbit(i), i], 1-based
+	private int[] tree;
+	private int size;
+
+	FenwickTree(int capacity) {
+		tree = new int[capacity + 1];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Replaces every entry with the first size values, in O(size).
+	 */
+	void build(int[] values, int size) {
+		ensureCapacity(size);
+		this.size = size;
+		for (int i = 1; i <= size; i++) {
+			tree[i] = values[i - 1];
+		}
+		for (int i = 1; i <= size; i++) {
+			int parent = i + (i & -i);
+			if (parent <= size) {
+				tree[parent] += tree[i];
+			}
+		}
+	}
+
+	/**
+	 * Adds an entry after the last one, in O(log size).
+	 */
+	void append(int value) {
+		ensureCapacity(size + 1);
+		int i = ++size;
+		tree[i] = value + prefix(i - 1) - prefix(i - (i & -i));
+	}
+
+	/**
+	 * Drops every entry from size on. The rest are unaffected.
+	 */
+	void truncate(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Adds delta to entry index.
+	 */
+	void add(int index, int delta) {
+		for (int i = index + 1; i <= size; i += i & -i) {
+			tree[i] += delta;
+		}
+	}
+
+	/**
+	 * The sum of the first count entries.
+	 */
+	int prefix(int count) {
+		int sum = 0;
+		for (int i = count; i > 0; i -= i & -i) {
+			sum += tree[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * The entry whose span holds offset, that is the last entry whose
+	 * prefix is at most offset. Offsets past the total fall in the last
+	 * entry.
+	 */
+	int indexAt(int offset) {
+		int position = 0;
+		for (int step = Integer.highestOneBit(size); step > 0; step >>= 1) {
+			int next = position + step;
+			if (next <= size && tree[next] <= offset) {
+				position = next;
+				offset -= tree[next];
+			}
+		}
+		return Math.min(position, size - 1);
+	}
+
+	private void ensureCapacity(int size) {
+		if (size >= tree.length) {
+			tree = Arrays.copyOf(tree, Math.max(size + 1, tree.length + (tree.length >> 1)));
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+package core;
+
+/**
+ * An iterative radix-2 fast Fourier transform over separate real and
+ * imaginary arrays, used to count onset pairs by autocorrelation.
+ *
+ * @author kr0
+ *
+ */
+final class Fft {
+
+	private Fft() {
+	}
+
+	/**
+	 * The smallest power of two that is at least n.
+	 */
+	static int size(int n) {
+		return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+	}
+
+	/**
+	 * The cyclic autocorrelation of a 0/1 signal of length n given by the
+	 * sorted positions of its ones: result[s] is the number of ordered pairs
+	 * of ones s apart mod n. Runs in O(n log n) whatever the number of ones.
+	 * @param positions
+	 * @param k
+	 *            number of positions used
+	 * @param n
+	 * @return
+	 */
+	static long[] cyclicAutocorrelation(int[] positions, int k, int n) {
+		// padding to 2n keeps linear lags of either sign from overlapping
+		int m = size(2 * n);
+		double[] re = new double[m];
+		double[] im = new double[m];
+		for (int i = 0; i < k; i++) {
+			re[positions[i]] = 1;
+		}
+		transform(re, im, false);
+		for (int i = 0; i < m; i++) {
+			re[i] = re[i] * re[i] + im[i] * im[i];
+			im[i] = 0;
+		}
+		transform(re, im, true);
+
+		// lag s mod n is linear lag s or s - n
+		long[] result = new long[n];
+		for (int s = 0; s < n; s++) {
+			double sum = re[s] + (s == 0 ? 0 : re[m - n + s]);
+			result[s] = Math.round(sum / m);
+		}
+		return result;
+	}
+
+	/**
+	 * Transforms re + i im in place. The inverse is left unscaled.
+	 * @param re
+	 * @param im
+	 *            same length as re, a power of two
+	 * @param inverse
+	 */
+	static void transform(double[] re, double[] im, boolean inverse) {
+		int m = re.length;
+		for (int i = 1, j = 0; i < m; i++) {
+			int bit = m >> 1;
+			for (; (j & bit) != 0; bit >>= 1) {
+				j ^= bit;
+			}
+			j ^= bit;
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+		// twiddles are looked up rather than multiplied up, to keep counts exact
+		int half = m >> 1;
+		double[] cos = new double[half];
+		double[] sin = new double[half];
+		for (int i = 0; i < half; i++) {
+			double angle = 2 * Math.PI * i / m;
+			cos[i] = Math.cos(angle);
+			sin[i] = inverse ? Math.sin(angle) : -Math.sin(angle);
+		}
+		for (int length = 2; length <= m; length <<= 1) {
+			int span = length >> 1;
+			int stride = m / length;
+			for (int start = 0; start < m; start += length) {
+				for (int i = start, t = 0; i < start + span; i++, t += stride) {
+					int j = i + span;
+					double tRe = re[j] * cos[t] - im[j] * sin[t];
+					double tIm = re[j] * sin[t] + im[j] * cos[t];
+					re[j] = re[i] - tRe;
+					im[j] = im[i] - tIm;
+					re[i] += tRe;
+					im[i] += tIm;
+				}
+			}
+		}
+	}
+
+}
@@ -1,10 +1,8 @@
 package core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
-
-import com.google.common.collect.BiMap;
-import com.google.common.collect.Lists;
 
 
 /**
@@ -15,39 +13,288 @@ import com.google.common.collect.Lists;
  */
 public final class Geometry {
 
+	// rough cost of one FFT butterfly step against counting one onset pair
+	private static final int FFT_COST = 8;
+
+	private static final ThreadLocal<int[][]> SCRATCH = new ThreadLocal<int[][]>() {
+		@Override
+		protected int[][] initialValue() {
+			return new int[][] { new int[64] };
+		}
+	};
+
 	public static List<Integer> rhythmicContour(Timeline t){
-		List<Integer> distances = Lists.newLinkedList();
-		Integer lastInterval = null;
-		for(Integer interval: Geometry.interOnsetIntervals(t)){
-			if(lastInterval != null){
-				int distance = interval - lastInterval;
-				distances.add(distance);
-			}
-			lastInterval = interval;
+		return boxed(rhythmicContourArray(t));
+	}
+
+	/**
+	 * The rhythmic contour of t: the difference between each inter-onset
+	 * interval and the one before it.
+	 * @param t
+	 * @return
+	 */
+	public static int[] rhythmicContourArray(Timeline t){
+		int[] intervals = scratch(t.getNumberOfOnsets());
+		int k = interOnsetIntervals(t, intervals);
+		int[] contour = new int[Math.max(k - 1, 0)];
+		for(int i = 0; i < contour.length; i++){
+			contour[i] = intervals[i + 1] - intervals[i];
 		}
-		
-		
-		return distances;
+		return contour;
 	}
-	
-	
-	public String boxNotation(Timeline t) {
-		return t.getNecklace().toString();
+
+	/**
+	 * Writes the rhythmic contour of t into dest without allocating.
+	 * @param t
+	 * @param dest
+	 *            scratch space, must hold at least t.getNumberOfOnsets() values
+	 * @return the length of the contour, one less than the number of onsets
+	 */
+	public static int rhythmicContour(Timeline t, int[] dest){
+		int k = interOnsetIntervals(t, dest);
+		for(int i = 0; i + 1 < k; i++){
+			dest[i] = dest[i + 1] - dest[i];
+		}
+		return Math.max(k - 1, 0);
 	}
-	
+
+
+	public static String boxNotation(Timeline t) {
+		return boxNotation(t, new StringBuilder(t.getNumberOfPulses() + 2)).toString();
+	}
+
+	/**
+	 * Appends the box notation of t, e.g. [x..x..x.], to sb. Each onset is
+	 * written followed by the rests up to the next one, so only onsets are
+	 * looked up.
+	 * @param t
+	 * @param sb
+	 * @return sb
+	 */
+	public static StringBuilder boxNotation(Timeline t, StringBuilder sb) {
+		sb.append('[');
+		int n = t.getNumberOfPulses();
+		int[] positions = new int[t.getNumberOfOnsets()];
+		int k = t.copyOnsetPositions(positions);
+		appendRests(sb, k == 0 ? n : positions[0]);
+		for(int i = 0; i < k; i++){
+			sb.append(t.pulseAt(positions[i]) == Pulse.ACCENT ? 'X' : 'x');
+			appendRests(sb, (i + 1 < k ? positions[i + 1] : n) - positions[i] - 1);
+		}
+		return sb.append(']');
+	}
+
+	private static void appendRests(StringBuilder sb, int count){
+		for(int i = 0; i < count; i++){
+			sb.append('.');
+		}
+	}
+
 
 	public static List<Integer> interOnsetIntervals(Timeline t) {
-		return t.getOnsets().values().stream()
-				.sorted(Onset.getComparator(t))
-				.map(Onset::duration)
-				.collect(Collectors.toList());
+		return boxed(interOnsetIntervalArray(t));
+	}
+
+	/**
+	 * The inter-onset intervals of t, starting from the first onset at or
+	 * after pulse 0.
+	 * @param t
+	 * @return
+	 */
+	public static int[] interOnsetIntervalArray(Timeline t) {
+		int[] intervals = new int[t.getNumberOfOnsets()];
+		interOnsetIntervals(t, intervals);
+		return intervals;
+	}
+
+	/**
+	 * Writes the inter-onset intervals of t into dest without allocating.
+	 * @param t
+	 * @param dest
+	 *            must hold at least t.getNumberOfOnsets() values
+	 * @return the number of intervals written
+	 */
+	public static int interOnsetIntervals(Timeline t, int[] dest) {
+		int k = t.copyOnsetPositions(dest);
+		if(k == 0){
+			return 0;
+		}
+		int first = dest[0];
+		for(int i = 0; i + 1 < k; i++){
+			dest[i] = dest[i + 1] - dest[i];
+		}
+		dest[k - 1] = first + t.getNumberOfPulses() - dest[k - 1];
+		return k;
 	}
+
 	public static String interOnsetIntervalString(Timeline t){
-		return t.getOnsets().values().stream()
-				.sorted(Onset.getComparator(t))
-				.map(Onset::duration)
-				.map(Object::toString)
-				.collect(Collectors.joining("-", "[", "]"));
+		return interOnsetIntervalString(t, new StringBuilder(3 * t.getNumberOfOnsets() + 2)).toString();
+	}
+
+	/**
+	 * Appends the inter-onset intervals of t, e.g. [3-3-2], to sb, in O(k).
+	 * @param t
+	 * @param sb
+	 * @return sb
+	 */
+	public static StringBuilder interOnsetIntervalString(Timeline t, StringBuilder sb){
+		sb.append('[');
+		int[] intervals = new int[t.getNumberOfOnsets()];
+		int k = interOnsetIntervals(t, intervals);
+		for(int i = 0; i < k; i++){
+			if(i > 0){
+				sb.append('-');
+			}
+			sb.append(intervals[i]);
+		}
+		return sb.append(']');
+	}
+
+	/**
+	 * The full interval content of t: result[d] is the number of pairs of
+	 * onsets whose geodesic distance around the timeline is d, for d from 1
+	 * to n / 2. result[0] is always 0. <br>
+	 * <b>Note -</b> sparse rhythms count every pair in O(k^2); dense or long
+	 * ones use a cyclic autocorrelation by FFT in O(n log n).
+	 * @param t
+	 * @return
+	 */
+	public static int[] intervalVector(Timeline t){
+		if(t instanceof ImmutableTimeline){
+			return ((ImmutableTimeline) t).intervalVector().clone();
+		}
+		return computeIntervalVector(t);
 	}
-	
+
+	/**
+	 * Whether the distances that occur between onsets of t all occur a
+	 * different number of times.
+	 * @param t
+	 * @return
+	 */
+	public static boolean isDeep(Timeline t){
+		int[] vector = sharedIntervalVector(t);
+		// a distance is seen at most once from every onset
+		boolean[] seen = new boolean[t.getNumberOfOnsets() + 1];
+		for(int d = 1; d < vector.length; d++){
+			if(vector[d] > 0){
+				if(seen[vector[d]]){
+					return false;
+				}
+				seen[vector[d]] = true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Whether t is Erdos-deep: for every multiplicity i from 1 to k - 1
+	 * exactly one distance occurs i times, where k is the number of onsets.
+	 * @param t
+	 * @return
+	 */
+	public static boolean isErdosDeep(Timeline t){
+		int k = t.getNumberOfOnsets();
+		if(k < 2){
+			return false;
+		}
+		int[] vector = sharedIntervalVector(t);
+		boolean[] seen = new boolean[k];
+		int distinct = 0;
+		for(int d = 1; d < vector.length; d++){
+			int multiplicity = vector[d];
+			if(multiplicity == 0){
+				continue;
+			}
+			if(multiplicity >= k || seen[multiplicity]){
+				return false;
+			}
+			seen[multiplicity] = true;
+			distinct++;
+		}
+		return distinct == k - 1;
+	}
+
+	/**
+	 * Whether t is Winograd-deep: every distance from 1 to n / 2 occurs a
+	 * different number of times, counting distances that never occur.
+	 * @param t
+	 * @return
+	 */
+	public static boolean isWinogradDeep(Timeline t){
+		int[] vector = sharedIntervalVector(t);
+		if(vector.length < 2){
+			return false;
+		}
+		int[] sorted = Arrays.copyOfRange(vector, 1, vector.length);
+		Arrays.sort(sorted);
+		for(int i = 1; i < sorted.length; i++){
+			if(sorted[i] == sorted[i - 1]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The interval vector of t without copying the one cached by an
+	 * ImmutableTimeline.
+	 */
+	private static int[] sharedIntervalVector(Timeline t){
+		if(t instanceof ImmutableTimeline){
+			return ((ImmutableTimeline) t).intervalVector();
+		}
+		return computeIntervalVector(t);
+	}
+
+	private static int[] computeIntervalVector(Timeline t){
+		int[] positions = new int[t.getNumberOfOnsets()];
+		int k = t.copyOnsetPositions(positions);
+		return intervalVector(positions, k, t.getNumberOfPulses());
+	}
+
+	static int[] intervalVector(int[] positions, int k, int n){
+		int[] vector = new int[n / 2 + 1];
+		if(k < 2){
+			return vector;
+		}
+		int m = Fft.size(2 * n);
+		long pairs = (long) k * (k - 1) / 2;
+		if(pairs <= (long) FFT_COST * m * (Integer.numberOfTrailingZeros(m) + 1)){
+			for(int i = 0; i < k; i++){
+				for(int j = i + 1; j < k; j++){
+					int d = positions[j] - positions[i];
+					vector[Math.min(d, n - d)]++;
+				}
+			}
+			return vector;
+		}
+		long[] lags = Fft.cyclicAutocorrelation(positions, k, n);
+		// every pair is counted once at d and once at n - d
+		for(int d = 1; d <= n / 2; d++){
+			vector[d] = (int) (2 * d == n ? lags[d] / 2 : lags[d]);
+		}
+		return vector;
+	}
+
+	private static List<Integer> boxed(int[] values){
+		List<Integer> list = new ArrayList<>(values.length);
+		for(int v : values){
+			list.add(v);
+		}
+		return list;
+	}
+
+	/**
+	 * A buffer of at least size ints kept per thread, so a result can be
+	 * worked out before it is allocated at its final length.
+	 */
+	private static int[] scratch(int size){
+		int[][] scratch = SCRATCH.get();
+		if(scratch[0].length < size){
+			scratch[0] = new int[Math.max(size, scratch[0].length * 2)];
+		}
+		return scratch[0];
+	}
+
 }
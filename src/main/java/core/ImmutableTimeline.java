@@ -1,44 +1,90 @@
 package core;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 
+/**
+ * A persistent Timeline. Onsets are kept in a balanced tree ordered by onset
+ * number, so every edit costs O(log n) and the returned Timeline shares all
+ * untouched onsets with this one. Pulses are not stored; they are derived
+ * from the onsets when asked for.
+ *
+ * @author kr0
+ *
+ */
 public class ImmutableTimeline implements Timeline {
 
-	private static final int EXPECTED_NUMBER_OF_ONSETS = Necklace.DEFAULT_CAPACITY;
-
-	private Necklace<Pulse> pulses;
-	private BiMap<Integer, Onset> onsets;
-	private int numberOfOnsets;
+	private final OnsetTree onsets;
+	// pulse where onset 0 starts
+	private final int offset;
+	private final int numberOfPulses;
+	// least rotation + 1 in the low word and its hash in the high word,
+	// 0 until computed
+	private volatile long rotation;
+	// Geometry.intervalVector of this timeline, null until computed
+	private volatile int[] intervalVector;
 
 	/**
 	 * Empty Timeline
 	 */
 	public ImmutableTimeline() {
-		pulses = new Necklace<Pulse>();
-		onsets = HashBiMap.create(EXPECTED_NUMBER_OF_ONSETS);
-		numberOfOnsets = 0;
+		this(null, 0, 0);
 	}
 
-	public ImmutableTimeline(int... interOnsetInterval) {
-		this();
+	public ImmutableTimeline(int... interOnsetInterval) throws IllegalArgumentException {
 		for (int duration : interOnsetInterval) {
-			addOnset(duration);
+			checkDuration(duration);
+		}
+		this.onsets = OnsetTree.build(interOnsetInterval, null, 0, interOnsetInterval.length);
+		this.offset = 0;
+		this.numberOfPulses = OnsetTree.pulses(onsets);
+	}
+
+	/**
+	 * Reads the onsets off a pulse necklace. Every attack or accent starts
+	 * an onset which lasts until the next one.
+	 *
+	 * @param pulses
+	 */
+	protected ImmutableTimeline(Necklace<Pulse> pulses) {
+		int size = pulses.size();
+		int[] durations = new int[size];
+		boolean[] accents = new boolean[size];
+		int first = -1;
+		int count = 0;
+		int previous = 0;
+		for (int i = 0; i < size; i++) {
+			Pulse p = pulses.get(i);
+			if (p == Pulse.REST) {
+				continue;
+			}
+			if (count == 0) {
+				first = i;
+			} else {
+				durations[count - 1] = i - previous;
+			}
+			accents[count++] = p == Pulse.ACCENT;
+			previous = i;
+		}
+		if (count > 0) {
+			durations[count - 1] = first + size - previous;
 		}
+		this.onsets = OnsetTree.build(durations, accents, 0, count);
+		this.offset = Math.max(first, 0);
+		this.numberOfPulses = size;
 	}
-	
-	protected ImmutableTimeline(Necklace<Pulse> pulses, BiMap<Integer, Onset> onsets){
-		this.pulses = pulses;
+
+	ImmutableTimeline(OnsetTree onsets, int offset, int numberOfPulses) {
 		this.onsets = onsets;
-		numberOfOnsets = this.onsets.size();
+		this.offset = offset;
+		this.numberOfPulses = numberOfPulses;
 	}
 
 	/**
 	 * Adds an onset to the end of this Timeline.
-	 * 
+	 *
 	 * @param duration
 	 *            Duration must be >= 1.
 	 * @param isAccent
@@ -47,12 +93,12 @@ public class ImmutableTimeline implements Timeline {
 	 */
 	public Timeline addOnset(int duration) throws IllegalArgumentException {
 		return addOnset(duration, false);
-	
+
 	}
 
 	/**
 	 * Adds an onset to the end of this Timeline.
-	 * 
+	 *
 	 * @param duration
 	 *            Duration must be >= 1.
 	 * @param isAccent
@@ -61,14 +107,14 @@ public class ImmutableTimeline implements Timeline {
 	 */
 	public Timeline addOnset(int duration, boolean isAccent)
 			throws IllegalArgumentException {
-		return insertOnset(pulses.size(), duration, isAccent);
+		return insertOnset(numberOfPulses, duration, isAccent);
 
 	}
 
 	/**
 	 * Inserts a new onset starting at a specific pulse. All subsequent pulses
 	 * are shifted to the right to make space.
-	 * 
+	 *
 	 * @param duration
 	 *            the length of any onset is >= 1
 	 * @param isAccent
@@ -80,8 +126,14 @@ public class ImmutableTimeline implements Timeline {
 
 	/**
 	 * Inserts a new onset starting at a specific pulse. All subsequent pulses
-	 * are shifted to the right to make space.
-	 * 
+	 * are shifted to the right to make space. <br>
+	 * <b>Note -</b> an onset inserted in the middle of another onset also
+	 * takes over the rests that followed the insertion point, since an onset
+	 * always lasts until the next attack.
+	 *
+	 * @param pulse
+	 *            understood modulo the number of pulses, except that
+	 *            pulse = getNumberOfPulses() appends
 	 * @param duration
 	 *            the length of any onset is >= 1
 	 * @param isAccent
@@ -89,23 +141,41 @@ public class ImmutableTimeline implements Timeline {
 	 */
 	public Timeline insertOnset(int pulse, int duration, boolean isAccent)
 			throws IllegalArgumentException {
+		checkDuration(duration);
+		int n = numberOfPulses;
+		pulse = (n == 0 || pulse == n) ? n : Math.floorMod(pulse, n);
+
+		if (onsets == null) {
+			// the new onset absorbs every existing rest
+			OnsetTree single = OnsetTree.insert(null, 0, n + duration, isAccent);
+			return new ImmutableTimeline(single, pulse, n + duration);
+		}
 
-		BiMap<Integer, Onset> newOnsets = HashBiMap.create(onsets);
-		Necklace<Pulse> newPulses = new Necklace<>(pulses);
-		
-		// Create onset
-		Onset onset = new Onset(pulse, duration, numberOfOnsets, isAccent);
+		// position relative to onset 0
+		int newOffset = offset;
+		int position = pulse - offset;
+		if (pulse < offset) {
+			position += n;
+			newOffset += duration;
+		}
 
-		// Put onset into map and necklace
-		newOnsets.put(onset.id(), onset);
-		newPulses.add(isAccent ? Pulse.ACCENT : Pulse.ATTACK, pulse);
-		for (int i = 1; i < onset.duration(); i++) {
-			newPulses.add(Pulse.REST, pulse + 1);
+		OnsetTree newOnsets;
+		if (position == n) {
+			newOnsets = OnsetTree.insert(onsets, OnsetTree.count(onsets), duration, isAccent);
+		} else {
+			int index = OnsetTree.indexAt(onsets, position);
+			int start = OnsetTree.start(onsets, index);
+			if (start == position) {
+				newOnsets = OnsetTree.insert(onsets, index, duration, isAccent);
+			} else {
+				// split the onset we landed in
+				OnsetTree split = OnsetTree.get(onsets, index);
+				int remainder = start + split.duration - position;
+				newOnsets = OnsetTree.replace(onsets, index, position - start, split.isAccent);
+				newOnsets = OnsetTree.insert(newOnsets, index + 1, duration + remainder, isAccent);
+			}
 		}
-		
-		Timeline t = new ImmutableTimeline(newPulses, newOnsets);
-		return t;
-		
+		return new ImmutableTimeline(newOnsets, newOffset, n + duration);
 	}
 
 	/**
@@ -114,46 +184,32 @@ public class ImmutableTimeline implements Timeline {
 	 * @throws IllegalArgumentException
 	 */
 	public Timeline removeOnset(Onset removeOnset) throws IllegalArgumentException {
-		BiMap<Integer, Onset> newOnsets = HashBiMap.create(onsets);
-		Necklace<Pulse> newPulses = new Necklace<>(pulses);
-		
-		int numberToRemove = getOnsetNumber(removeOnset);
-		int lengthRemoved = removeOnset.duration();
-
-		// Replace onset pulses with rests
-		newPulses.set(Pulse.REST, removeOnset.start(), removeOnset.end());
-
-		// Adjust previous onset
-		Onset prevOnset = getOnset(getOnsetNumber(removeOnset) - 1);
-		newOnsets.forcePut(prevOnset.id(), 
-				new Onset(prevOnset.start(),
-						  prevOnset.end() + lengthRemoved,
-						  prevOnset.id(),
-						  prevOnset.isAccent()));
-
-		// Remove
-		newOnsets.remove(numberToRemove);
-
-		// Renumber onsets
-		for (int i = 0; i < numberOfOnsets; i++) {
-			if (i > numberToRemove) {
-				Onset adjOnset = newOnsets.get(wrapOnsetIndex(i));
-				adjOnset.setId(i - 1);
-				newOnsets.forcePut(adjOnset.id(), adjOnset);
-			}
-		}
-
-		Timeline t = new ImmutableTimeline(newPulses, newOnsets);
-		return t;
+		return removeOnset(getOnsetNumber(removeOnset));
 	}
 
 	/**
 	 * Removes a specific onset. All pulses of the onset
-	 * become rests.
+	 * become rests, which extend the previous onset.
 	 * @param i
 	 */
-	public Timeline removeOnset(int i) {
-		return removeOnset(getOnset(i));
+	public Timeline removeOnset(int i) throws IllegalArgumentException {
+		int k = getNumberOfOnsets();
+		if (k == 0) {
+			throw new IllegalArgumentException("There are no onsets to remove.");
+		}
+		if (k == 1) {
+			return new ImmutableTimeline(null, 0, numberOfPulses);
+		}
+		i = wrapOnsetIndex(i);
+		OnsetTree removed = OnsetTree.get(onsets, i);
+		int previousIndex = (i == 0) ? k - 1 : i - 1;
+		OnsetTree previous = OnsetTree.get(onsets, previousIndex);
+
+		OnsetTree newOnsets = OnsetTree.replace(onsets, previousIndex,
+				previous.duration + removed.duration, previous.isAccent);
+		newOnsets = OnsetTree.remove(newOnsets, i);
+		int newOffset = (i == 0) ? (offset + removed.duration) % numberOfPulses : offset;
+		return new ImmutableTimeline(newOnsets, newOffset, numberOfPulses);
 	}
 
 	/**
@@ -167,79 +223,250 @@ public class ImmutableTimeline implements Timeline {
 	 */
 	public Timeline replaceOnset(int i, int duration, boolean isAccent)
 			throws IllegalArgumentException {
-
-		BiMap<Integer, Onset> newOnsets = HashBiMap.create(onsets);
-		Necklace<Pulse> newPulses = new Necklace<>(pulses);
-		
-		Onset replacedOnset = newOnsets.get(wrapOnsetIndex(i));
-		Onset newOnset = new Onset(
-				replacedOnset.start(),
-				duration,
-				replacedOnset.id(),
-				isAccent);
-
-		// Modify necklace
-		if(replacedOnset.duration() > newOnset.duration()){
-			newPulses.shrink(replacedOnset.end(),newOnset.end());
-		}
-		else if(replacedOnset.duration() <= newOnset.duration()){
-			newPulses.extend(replacedOnset.end(), Pulse.REST, newOnset.duration());
-			newPulses.set(isAccent? Pulse.ACCENT: Pulse.ATTACK, newOnset.start());
+		checkDuration(duration);
+		i = wrapOnsetIndex(i);
+		int oldDuration = OnsetTree.get(onsets, i).duration;
+		int delta = duration - oldDuration;
+
+		// Pulses are added or removed at the end of the onset. Any of them
+		// that wrap past the last pulse move onset 0.
+		int end = offset + OnsetTree.start(onsets, i) + oldDuration;
+		int newOffset = offset;
+		if (end > numberOfPulses) {
+			if (delta > 0) {
+				newOffset += delta;
+			} else {
+				newOffset -= end - Math.max(end + delta, numberOfPulses);
+			}
 		}
 
-		// Modify onset map
-		newOnsets.forcePut(replacedOnset.id(), newOnset);
-		Timeline t = new ImmutableTimeline(newPulses, newOnsets);
-		
-		return t;
+		OnsetTree newOnsets = OnsetTree.replace(onsets, i, duration, isAccent);
+		return new ImmutableTimeline(newOnsets, newOffset, numberOfPulses + delta);
 	}
 
-	
+
 	@Override
 	public int getNumberOfPulses() {
-		return pulses.size();
+		return numberOfPulses;
 	}
-	
+
 	@Override
 	public int getNumberOfOnsets() {
-		return numberOfOnsets;
+		return OnsetTree.count(onsets);
 	}
 
 	@Override
 	public Onset getOnset(int i) {
-		return onsets.get(wrapOnsetIndex(i));
+		i = wrapOnsetIndex(i);
+		OnsetTree node = OnsetTree.get(onsets, i);
+		int start = (offset + OnsetTree.start(onsets, i)) % numberOfPulses;
+		return new Onset(start, node.duration, i, node.isAccent);
 	}
 
 	@Override
 	public int getOnsetNumber(Onset onset) {
-		return wrapOnsetIndex(onsets.inverse().get(onset));
+		return onsetAt(onset.start());
 	}
 
 	@Override
 	public BiMap<Integer, Onset> getOnsets() {
-		return HashBiMap.create(onsets);
+		int k = getNumberOfOnsets();
+		int[] durations = new int[k];
+		boolean[] accents = new boolean[k];
+		OnsetTree.fill(onsets, durations, accents, 0);
+
+		BiMap<Integer, Onset> map = HashBiMap.create(k);
+		int start = offset;
+		for (int i = 0; i < k; i++) {
+			map.put(i, new Onset(start % numberOfPulses, durations[i], i, accents[i]));
+			start += durations[i];
+		}
+		return map;
 	}
 
-	
+
 	@Override
 	public Necklace<Pulse> getNecklace() {
-		return new Necklace<Pulse>(pulses);
+		PulseNecklace pulses = new PulseNecklace(numberOfPulses);
+		pulses.appendRests(numberOfPulses);
+		int k = getNumberOfOnsets();
+		int[] durations = new int[k];
+		boolean[] accents = new boolean[k];
+		OnsetTree.fill(onsets, durations, accents, 0);
+
+		int start = offset;
+		for (int i = 0; i < k; i++) {
+			pulses.set(accents[i] ? Pulse.ACCENT : Pulse.ATTACK, start);
+			start += durations[i];
+		}
+		return pulses;
+	}
+
+	@Override
+	public Pulse pulseAt(int pulse) {
+		if (onsets == null) {
+			return Pulse.REST;
+		}
+		int position = Math.floorMod(pulse - offset, numberOfPulses);
+		int index = OnsetTree.indexAt(onsets, position);
+		if (OnsetTree.start(onsets, index) != position) {
+			return Pulse.REST;
+		}
+		return OnsetTree.get(onsets, index).isAccent ? Pulse.ACCENT : Pulse.ATTACK;
+	}
+
+	@Override
+	public int onsetAt(int pulse) {
+		if (onsets == null) {
+			return -1;
+		}
+		int position = Math.floorMod(pulse - offset, numberOfPulses);
+		return OnsetTree.indexAt(onsets, position);
+	}
+
+	@Override
+	public int onsetStart(int i) {
+		return (offset + OnsetTree.start(onsets, wrapOnsetIndex(i))) % numberOfPulses;
+	}
+
+	/**
+	 * Onsets are stored in logical order, so the ones that wrap past the last
+	 * pulse are rotated to the front.
+	 */
+	@Override
+	public int copyOnsetPositions(int[] dest) {
+		int k = OnsetTree.fill(onsets, dest, null, 0);
+		int start = offset;
+		int wrapped = k;
+		for (int i = 0; i < k; i++) {
+			int duration = dest[i];
+			if (start >= numberOfPulses) {
+				start -= numberOfPulses;
+				wrapped = Math.min(wrapped, i);
+			}
+			dest[i] = start;
+			start += duration;
+		}
+		if (wrapped < k) {
+			reverse(dest, 0, wrapped);
+			reverse(dest, wrapped, k);
+			reverse(dest, 0, k);
+		}
+		return k;
 	}
 
-	
+
 	@Override
 	public int wrapOnsetIndex(int i) {
-		return Math.floorMod(i, numberOfOnsets);
+		return Math.floorMod(i, getNumberOfOnsets());
+	}
+
+	@Override
+	public int wrapPulseIndex(int i) {
+		return Math.floorMod(i, getNumberOfPulses());
+	}
+
+	@Override
+	public List<Pulse> pulseView() {
+		return TimelineViews.pulses(this);
+	}
+
+	@Override
+	public List<Onset> onsetView() {
+		return TimelineViews.onsets(this);
+	}
+
+
+	/**
+	 * Rotating an ImmutableTimeline only moves onset 0, so the canonical
+	 * rotation shares every onset with this timeline.
+	 */
+	@Override
+	public Timeline canonicalRotation() {
+		int least = leastRotation();
+		if (least == 0) {
+			return this;
+		}
+		return rotatedBy(-least);
+	}
+
+	@Override
+	public int rotationHashCode() {
+		leastRotation();
+		return (int) (rotation >>> 32);
 	}
 
+	@Override
+	public boolean equalsUnderRotation(Timeline other) {
+		if (other == this) {
+			return true;
+		}
+		return other != null
+				&& numberOfPulses == other.getNumberOfPulses()
+				&& getNumberOfOnsets() == other.getNumberOfOnsets()
+				&& rotationHashCode() == other.rotationHashCode()
+				&& getNecklace().equalsUnderRotation(other.getNecklace());
+	}
+
+	private int leastRotation() {
+		long cached = rotation;
+		if (cached == 0) {
+			Necklace<Pulse> pulses = getNecklace();
+			cached = ((long) pulses.rotationHashCode() << 32) | (pulses.leastRotation() + 1);
+			rotation = cached;
+		}
+		return (int) cached - 1;
+	}
+
+	/**
+	 * The interval vector of this timeline, computed once and shared by every
+	 * caller. It must not be modified.
+	 * @return
+	 */
+	int[] intervalVector() {
+		int[] cached = intervalVector;
+		if (cached == null) {
+			int[] positions = new int[getNumberOfOnsets()];
+			int k = copyOnsetPositions(positions);
+			cached = Geometry.intervalVector(positions, k, numberOfPulses);
+			intervalVector = cached;
+		}
+		return cached;
+	}
+
+	/**
+	 * Moves every onset i pulses to the right. Only onset 0's position
+	 * changes, so this is O(1) and shares every onset with this timeline.
+	 * Rotation does not change the interval vector, so it is shared too.
+	 * @param i
+	 * @return
+	 */
+	ImmutableTimeline rotatedBy(int i) {
+		if (numberOfPulses == 0) {
+			return this;
+		}
+		ImmutableTimeline rotated = new ImmutableTimeline(onsets, Math.floorMod(offset + i, numberOfPulses), numberOfPulses);
+		rotated.intervalVector = intervalVector;
+		return rotated;
+	}
 
 	@Override
 	public Object clone() throws CloneNotSupportedException {
-		ImmutableTimeline clone = new ImmutableTimeline();
-		clone.numberOfOnsets = new Integer(this.numberOfOnsets);
-		clone.onsets = HashBiMap.create(this.onsets);
-		clone.pulses = (Necklace<Pulse>) this.pulses.clone();
-		return clone;
+		return new ImmutableTimeline(onsets, offset, numberOfPulses);
+	}
+
+	private static void reverse(int[] a, int from, int to) {
+		for (int i = from, j = to - 1; i < j; i++, j--) {
+			int tmp = a[i];
+			a[i] = a[j];
+			a[j] = tmp;
+		}
+	}
+
+	private static void checkDuration(int duration) throws IllegalArgumentException {
+		if (duration < 1) {
+			throw new IllegalArgumentException("Duration must be >= 1. An Onset is an attack plus some number of rests.");
+		}
 	}
 
 }
@@ -4,7 +4,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.stream.Collectors;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.StringJoiner;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
@@ -21,6 +23,15 @@ public class Necklace<E> implements Iterable<E> {
 	static final int DEFAULT_CAPACITY = 16;
 	ArrayList<E> list;
 
+	// list index of element 0, so rotating only moves the origin
+	private int origin;
+	// list is also used by another necklace and must be copied before writes
+	private boolean shared;
+
+	// index of the least rotation, -1 until computed
+	private int leastRotation = -1;
+	private int rotationHash;
+
 	/**
 	 * Creates an empty necklace with default capacity of 16.
 	 */
@@ -33,9 +44,32 @@ public class Necklace<E> implements Iterable<E> {
 		list = new ArrayList<>(capacity);
 	}
 
+	/**
+	 * Copies a necklace. A copy of a plain Necklace shares its elements
+	 * until either of them is modified, so copying is O(1).
+	 * 
+	 * @param necklace
+	 */
 	public Necklace(Necklace<E> necklace) {
-		this.list = new ArrayList<E>(necklace.list);
+		if (necklace.list != null) {
+			this.list = necklace.list;
+			this.origin = necklace.origin;
+			this.shared = true;
+			necklace.shared = true;
+		} else {
+			this.list = Lists.newArrayList(necklace);
+		}
+
+	}
 
+	/**
+	 * Wraps a backing list. Subclasses that keep their own storage pass
+	 * null and override every accessor.
+	 * 
+	 * @param list
+	 */
+	Necklace(ArrayList<E> list) {
+		this.list = list;
 	}
 
 	/**
@@ -54,8 +88,7 @@ public class Necklace<E> implements Iterable<E> {
 	 * @return
 	 */
 	public E get(int index) {
-		index = wrapindex(index);
-		return list.get(index);
+		return list.get(physical(wrapindex(index)));
 	}
 
 	/**
@@ -66,7 +99,7 @@ public class Necklace<E> implements Iterable<E> {
 	 * @return
 	 */
 	public void add(E elem) {
-
+		materialize();
 		list.add(elem);
 
 	}
@@ -91,6 +124,7 @@ public class Necklace<E> implements Iterable<E> {
 			return;
 		}
 		index = wrapindex(index);
+		materialize();
 		list.add(index, elem);
 	}
 
@@ -112,7 +146,9 @@ public class Necklace<E> implements Iterable<E> {
 		if (size() == 0) {
 			return null;
 		}
-		return list.remove(wrapindex(index));
+		index = wrapindex(index);
+		materialize();
+		return list.remove(index);
 	}
 
 	/**
@@ -129,7 +165,8 @@ public class Necklace<E> implements Iterable<E> {
 			return false;
 		}
 		index = wrapindex(index);
-		list.set(index, elem);
+		unshare();
+		list.set(physical(index), elem);
 		return true;
 	}
 
@@ -179,11 +216,7 @@ public class Necklace<E> implements Iterable<E> {
 	 * @return
 	 */
 	public void extend(int start, E elem, int n) {
-		start = wrapindex(start);
-		start++;
-		for (int i = 0; i < n; i++) {
-			add(elem, start);
-		}
+		add(elem, wrapindex(start) + 1, n);
 	}
 
 	/**
@@ -198,9 +231,60 @@ public class Necklace<E> implements Iterable<E> {
 		if(end2 > end){
 			throw new IllegalArgumentException("Can not shrink in that direction");
 		}
-		
-		set(null, end, end2);
-		list.removeIf(p -> p==null);
+		removeRange(end, end2);
+	}
+
+	/**
+	 * Inserts n copies of an element before index with a single move of the
+	 * elements after it. All elements from index on have their indices
+	 * shifted by n.
+	 * 
+	 * @param elem
+	 * @param index
+	 *            modulo the size of this necklace, except that index = size()
+	 *            appends
+	 * @param n
+	 *            must be >= 0
+	 */
+	public void add(E elem, int index, int n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("Can not insert a negative number of elements.");
+		}
+		if (n == 0) {
+			return;
+		}
+		if (size() != 0 && index != size()) {
+			index = wrapindex(index);
+		} else {
+			index = size();
+		}
+		materialize();
+		list.addAll(index, Collections.nCopies(n, elem));
+	}
+
+	/**
+	 * Removes every element from start to end inclusive, going round the end
+	 * of this necklace if end comes before start. Each side of the wrap is
+	 * removed with a single move.
+	 * 
+	 * @param start
+	 *            index modulo the size of this necklace
+	 * @param end
+	 *            index modulo the size of this necklace
+	 */
+	public void removeRange(int start, int end) {
+		if (size() == 0) {
+			return;
+		}
+		start = wrapindex(start);
+		end = wrapindex(end);
+		materialize();
+		if (start <= end) {
+			list.subList(start, end + 1).clear();
+		} else {
+			list.subList(start, list.size()).clear();
+			list.subList(0, end + 1).clear();
+		}
 	}
 
 	/**
@@ -229,34 +313,268 @@ public class Necklace<E> implements Iterable<E> {
 		return Iterators.cycle(this);
 	}
 
+	/**
+	 * Rotates this necklace so that the element at index j moves to index
+	 * j + i. Only the origin of the backing list moves, so this is O(1);
+	 * elements are moved the next time the size of this necklace changes.
+	 * 
+	 * @param i
+	 */
 	public void rotateBy(int i) {
-		Collections.rotate(list, i);
+		if (size() == 0) {
+			return;
+		}
+		modified();
+		origin = Math.floorMod(origin - i, size());
 
 	}
 
+	/**
+	 * Returns this necklace rotated by i as a new necklace. The two share
+	 * their elements until either is modified, so this is O(1).
+	 * 
+	 * @param i
+	 * @return
+	 */
+	public Necklace<E> rotated(int i) {
+		Necklace<E> rotated = copy();
+		rotated.rotateBy(i);
+		return rotated;
+	}
+
+	/**
+	 * Returns the index of the first element of the lexicographically least
+	 * rotation of this necklace (Booth's algorithm, O(n)). Elements are
+	 * compared by their natural ordering, so they must be Comparable. The
+	 * result is cached until this necklace is modified.
+	 * 
+	 * @return 0 for an empty necklace
+	 */
+	public int leastRotation() {
+		if (leastRotation < 0) {
+			int least = booth();
+			int hash = 1;
+			for (int i = 0; i < size(); i++) {
+				hash = 31 * hash + Objects.hashCode(get(least + i));
+			}
+			rotationHash = hash;
+			leastRotation = least;
+		}
+		return leastRotation;
+	}
+
+	/**
+	 * Returns a copy of this necklace rotated so that it starts with its
+	 * least rotation. Two necklaces are rotations of each other exactly when
+	 * their canonical rotations are equal.
+	 * 
+	 * @return
+	 */
+	public Necklace<E> canonicalRotation() {
+		int least = leastRotation();
+		Necklace<E> canonical = copy();
+		canonical.rotateBy(-least);
+		canonical.rotationHash = rotationHash;
+		canonical.leastRotation = 0;
+		return canonical;
+	}
+
+	/**
+	 * A hash code shared by every rotation of this necklace. Cached until
+	 * this necklace is modified.
+	 * 
+	 * @return
+	 */
+	public int rotationHashCode() {
+		leastRotation();
+		return rotationHash;
+	}
+
+	/**
+	 * Is this necklace some rotation of another? Runs in O(n) once both
+	 * least rotations are known.
+	 * 
+	 * @param other
+	 * @return
+	 */
+	public boolean equalsUnderRotation(Necklace<?> other) {
+		if (other == null || size() != other.size()
+				|| rotationHashCode() != other.rotationHashCode()) {
+			return false;
+		}
+		int a = leastRotation();
+		int b = other.leastRotation();
+		for (int i = 0; i < size(); i++) {
+			if (!Objects.equals(get(a + i), other.get(b + i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the elements at two indices, wrapped to this necklace.
+	 * 
+	 * @param i
+	 * @param j
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	int compareElements(int i, int j) {
+		return ((Comparable<? super E>) get(i)).compareTo(get(j));
+	}
+
+	/**
+	 * Returns a copy of this necklace of the same class.
+	 * 
+	 * @return
+	 */
+	Necklace<E> copy() {
+		return new Necklace<>(this);
+	}
+
+	/**
+	 * Clears cached values. Every mutator calls this.
+	 */
+	void modified() {
+		leastRotation = -1;
+	}
+
+	/**
+	 * List index of the element at index, which must already be wrapped.
+	 */
+	private int physical(int index) {
+		int p = index + origin;
+		return p >= list.size() ? p - list.size() : p;
+	}
+
+	/**
+	 * Gives this necklace its own list.
+	 */
+	private void unshare() {
+		modified();
+		if (shared) {
+			list = new ArrayList<>(list);
+			shared = false;
+		}
+	}
+
+	/**
+	 * Gives this necklace its own list with element 0 at list index 0, so
+	 * that elements can be added and removed.
+	 */
+	private void materialize() {
+		modified();
+		if (origin == 0) {
+			unshare();
+			return;
+		}
+		ArrayList<E> ordered = new ArrayList<>(Math.max(list.size() + 1, DEFAULT_CAPACITY));
+		ordered.addAll(list.subList(origin, list.size()));
+		ordered.addAll(list.subList(0, origin));
+		list = ordered;
+		origin = 0;
+		shared = false;
+	}
+
+	private int booth() {
+		int n = size();
+		if (n == 0) {
+			return 0;
+		}
+		int[] failure = new int[2 * n];
+		failure[0] = -1;
+		int k = 0;
+		for (int j = 1; j < 2 * n; j++) {
+			int i = failure[j - k - 1];
+			int cmp;
+			while (i != -1 && (cmp = compareElements(j, k + i + 1)) != 0) {
+				if (cmp < 0) {
+					k = j - i - 1;
+				}
+				i = failure[i];
+			}
+			if (i == -1 && compareElements(j, k) != 0) {
+				if (compareElements(j, k) < 0) {
+					k = j;
+				}
+				failure[j - k] = -1;
+			} else {
+				failure[j - k] = i + 1;
+			}
+		}
+		return k % n;
+	}
+
 	@Override
 	public Iterator<E> iterator() {
-		return list.iterator();
+		return new Iterator<E>() {
+
+			private int cursor = 0;
+			private int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return cursor < size();
+			}
+
+			@Override
+			public E next() {
+				if (cursor >= size()) {
+					throw new NoSuchElementException();
+				}
+				last = cursor++;
+				return get(last);
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0) {
+					throw new IllegalStateException();
+				}
+				Necklace.this.remove(last);
+				cursor = last;
+				last = -1;
+			}
+		};
 	}
 
 	@Override
 	public Object clone() throws CloneNotSupportedException {
-		Necklace<E> newNecklace = new Necklace<>();
-		newNecklace.list = Lists.newArrayList(this.list);
-		return newNecklace;
+		return new Necklace<>(this);
 	}
 
 	@Override
 	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
 		if (obj == null || !(obj instanceof Necklace<?>)) {
 			return false;
 		}
-		return this.toString().equals(obj.toString());
+		Necklace<?> other = (Necklace<?>) obj;
+		if (size() != other.size()) {
+			return false;
+		}
+		Iterator<?> it = other.iterator();
+		for (E elem : this) {
+			if (!Objects.equals(elem, it.next())) {
+				return false;
+			}
+		}
+		return true;
 	}
 
+	/**
+	 * Hashes the elements in order, like List.hashCode().
+	 */
 	@Override
 	public int hashCode() {
-		return super.hashCode();
+		int hash = 1;
+		for (E elem : this) {
+			hash = 31 * hash + Objects.hashCode(elem);
+		}
+		return hash;
 	}
 
 	@Override
@@ -270,8 +588,11 @@ public class Necklace<E> implements Iterable<E> {
 	 * @return
 	 */
 	public String toString(String delimiter) {
-		return list.stream().map(Object::toString)
-				.collect(Collectors.joining(delimiter, "[", "]"));
+		StringJoiner joiner = new StringJoiner(delimiter, "[", "]");
+		for (E elem : this) {
+			joiner.add(elem.toString());
+		}
+		return joiner.toString();
 	}
 
 }
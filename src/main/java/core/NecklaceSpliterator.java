@@ -0,0 +1,230 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Generates fixed density necklaces with the Fredricksen-Kessler-Maiorana
+ * algorithm. The recursion of FKM is unrolled onto explicit per-depth
+ * frames, so generation can pause after every necklace and any frame's
+ * untried values can be handed to another spliterator. Subtrees that can not
+ * reach the requested number of onsets are pruned. <br>
+ * Beads are pulse ordinals (REST < ACCENT < ATTACK), so every necklace comes
+ * out as its own canonical rotation.
+ *
+ * @author kr0
+ *
+ */
+final class NecklaceSpliterator implements Spliterator<Timeline> {
+
+	private final int n;
+	private final int k;
+	private final boolean accents;
+	private final boolean bracelets;
+
+	// a[0] = 0 and a[1..n] are the beads
+	private final int[] a;
+	// number of onsets among a[1..t]
+	private final int[] ones;
+	// period of a[1..t-1] when depth t is entered
+	private final int[] period;
+	// next and last bead to try at depth t
+	private final int[] next;
+	private final int[] limit;
+	// shallowest depth owned by this spliterator
+	private final int root;
+	private int depth;
+
+	private int[] reversed;
+	private int[] failure;
+
+	NecklaceSpliterator(int pulses, int onsets, boolean accents, boolean bracelets) {
+		this.n = pulses;
+		this.k = onsets;
+		this.accents = accents;
+		this.bracelets = bracelets;
+		this.a = new int[n + 1];
+		this.ones = new int[n + 1];
+		this.period = new int[n + 2];
+		this.next = new int[n + 2];
+		this.limit = new int[n + 2];
+		this.root = 1;
+		this.depth = 1;
+		period[1] = 1;
+		next[1] = 0;
+		limit[1] = alphabet() - 1;
+	}
+
+	/**
+	 * Takes over beads from..to at depth d of another spliterator.
+	 */
+	private NecklaceSpliterator(NecklaceSpliterator parent, int d, int from, int to) {
+		this.n = parent.n;
+		this.k = parent.k;
+		this.accents = parent.accents;
+		this.bracelets = parent.bracelets;
+		this.a = Arrays.copyOf(parent.a, n + 1);
+		this.ones = Arrays.copyOf(parent.ones, n + 1);
+		this.period = new int[n + 2];
+		this.next = new int[n + 2];
+		this.limit = new int[n + 2];
+		this.root = d;
+		this.depth = d;
+		period[d] = parent.period[d];
+		next[d] = from;
+		limit[d] = to;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Timeline> action) {
+		while (depth >= root) {
+			int t = depth;
+			if (t > n) {
+				depth = n;
+				if (n % period[n + 1] == 0 && (!bracelets || isBracelet())) {
+					action.accept(toTimeline());
+					return true;
+				}
+				continue;
+			}
+			int bead = next[t];
+			if (bead > limit[t]) {
+				depth--;
+				continue;
+			}
+			next[t] = bead + 1;
+			a[t] = bead;
+			int count = ones[t - 1] + (bead == 0 ? 0 : 1);
+			if (count > k || count + n - t < k) {
+				continue;
+			}
+			ones[t] = count;
+			int p = period[t];
+			int childPeriod = (bead == a[t - p]) ? p : t;
+			depth = t + 1;
+			period[t + 1] = childPeriod;
+			if (t < n) {
+				next[t + 1] = a[t + 1 - childPeriod];
+				limit[t + 1] = alphabet() - 1;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Splits off the untried beads of the shallowest frame that has any.
+	 */
+	@Override
+	public Spliterator<Timeline> trySplit() {
+		int deepest = Math.min(depth, n);
+		for (int d = root; d <= deepest; d++) {
+			int from = next[d];
+			int to = limit[d];
+			if (from > to) {
+				continue;
+			}
+			if (d < depth) {
+				// a bead of this frame is being explored, the rest are free
+				limit[d] = from - 1;
+				return new NecklaceSpliterator(this, d, from, to);
+			}
+			if (from < to) {
+				int mid = (from + to + 1) >>> 1;
+				limit[d] = mid - 1;
+				return new NecklaceSpliterator(this, d, mid, to);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		return DISTINCT | NONNULL | IMMUTABLE;
+	}
+
+	private int alphabet() {
+		return accents ? 3 : 2;
+	}
+
+	private Timeline toTimeline() {
+		if (k == 0) {
+			return new ImmutableTimeline(null, 0, n);
+		}
+		int[] durations = new int[k];
+		boolean[] accented = new boolean[k];
+		int first = -1;
+		int previous = 0;
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			int bead = a[i + 1];
+			if (bead == 0) {
+				continue;
+			}
+			if (count == 0) {
+				first = i;
+			} else {
+				durations[count - 1] = i - previous;
+			}
+			accented[count++] = accents && bead == Pulse.ACCENT.ordinal();
+			previous = i;
+		}
+		durations[k - 1] = first + n - previous;
+		return new ImmutableTimeline(OnsetTree.build(durations, accented, 0, k), first, n);
+	}
+
+	/**
+	 * A necklace represents its bracelet when it is no greater than the
+	 * least rotation of its reversal.
+	 */
+	private boolean isBracelet() {
+		if (reversed == null) {
+			reversed = new int[n];
+			failure = new int[2 * n];
+		}
+		for (int i = 0; i < n; i++) {
+			reversed[i] = a[n - i];
+		}
+		int least = leastRotation(reversed, failure, n);
+		for (int i = 0; i < n; i++) {
+			int cmp = Integer.compare(a[i + 1], reversed[(least + i) % n]);
+			if (cmp != 0) {
+				return cmp < 0;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Booth's least rotation over the first n values of s.
+	 */
+	private static int leastRotation(int[] s, int[] failure, int n) {
+		failure[0] = -1;
+		int k = 0;
+		for (int j = 1; j < 2 * n; j++) {
+			int sj = s[j % n];
+			int i = failure[j - k - 1];
+			while (i != -1 && sj != s[(k + i + 1) % n]) {
+				if (sj < s[(k + i + 1) % n]) {
+					k = j - i - 1;
+				}
+				i = failure[i];
+			}
+			if (i == -1 && sj != s[k % n]) {
+				if (sj < s[k % n]) {
+					k = j;
+				}
+				failure[j - k] = -1;
+			} else {
+				failure[j - k] = i + 1;
+			}
+		}
+		return k % n;
+	}
+
+}
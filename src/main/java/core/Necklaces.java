@@ -0,0 +1,98 @@
+package core;
+
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A utility class for enumerating every rhythm with a given number of pulses
+ * and onsets, up to rotation (necklaces) or up to rotation and reflection
+ * (bracelets). <br>
+ * Rhythms are generated lazily with the Fredricksen-Kessler-Maiorana
+ * algorithm, in canonical rotation form, as ImmutableTimelines. The streams
+ * are sequential; call parallel() to split the work across the common
+ * fork-join pool.
+ *
+ * @author kr0
+ *
+ */
+public final class Necklaces {
+
+	/**
+	 * All binary necklaces of pulses pulses and onsets onsets.
+	 * @param pulses
+	 * @param onsets
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public static Stream<Timeline> necklaces(int pulses, int onsets)
+			throws IllegalArgumentException {
+		return necklaces(pulses, onsets, false);
+	}
+
+	/**
+	 * All necklaces of pulses pulses and onsets onsets.
+	 * @param pulses
+	 * @param onsets
+	 * @param accents
+	 *            if true each onset is either an attack or an accent
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public static Stream<Timeline> necklaces(int pulses, int onsets, boolean accents)
+			throws IllegalArgumentException {
+		return StreamSupport.stream(spliterator(pulses, onsets, accents, false), false);
+	}
+
+	/**
+	 * All binary bracelets of pulses pulses and onsets onsets.
+	 * @param pulses
+	 * @param onsets
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public static Stream<Timeline> bracelets(int pulses, int onsets)
+			throws IllegalArgumentException {
+		return bracelets(pulses, onsets, false);
+	}
+
+	/**
+	 * All bracelets of pulses pulses and onsets onsets. Each bracelet is
+	 * represented by the lesser of its two mirror image necklaces. <br>
+	 * <b>Note -</b> bracelets are filtered out of the necklace stream, which
+	 * costs an extra O(n) check per necklace.
+	 * @param pulses
+	 * @param onsets
+	 * @param accents
+	 *            if true each onset is either an attack or an accent
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public static Stream<Timeline> bracelets(int pulses, int onsets, boolean accents)
+			throws IllegalArgumentException {
+		return StreamSupport.stream(spliterator(pulses, onsets, accents, true), false);
+	}
+
+	/**
+	 * The spliterator behind the necklace and bracelet streams.
+	 * @param pulses
+	 *            must be >= 1
+	 * @param onsets
+	 *            must be between 0 and pulses
+	 * @param accents
+	 * @param bracelets
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public static Spliterator<Timeline> spliterator(int pulses, int onsets,
+			boolean accents, boolean bracelets) throws IllegalArgumentException {
+		if (pulses < 1) {
+			throw new IllegalArgumentException("A necklace needs at least one pulse.");
+		}
+		if (onsets < 0 || onsets > pulses) {
+			throw new IllegalArgumentException("Number of onsets must be between 0 and " + pulses + ".");
+		}
+		return new NecklaceSpliterator(pulses, onsets, accents, bracelets);
+	}
+
+}
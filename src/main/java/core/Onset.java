@@ -14,16 +14,15 @@ import com.google.common.collect.Range;
  */
 public final class Onset{
 
-	protected Range<Integer> range;
-	private boolean isAccent;
-	protected Integer id;
+	/*
+	 * start in the high word, duration in the upper 31 bits of the low word
+	 * and the accent flag in its lowest bit
+	 */
+	private long bits;
+	private int id;
 	
 	public Onset(int start, int duration, int id, boolean isAccent) throws IllegalArgumentException{
-		if(duration < 1){
-			throw new IllegalArgumentException("Duration must be >= 1. An Onset is an attack plus some number of rests.");
-		}
-		this.range = Range.closed(start, (start + duration - 1));
-		this.isAccent = isAccent;
+		this.bits = pack(start, duration, isAccent);
 		this.id = id;
 	}
 	
@@ -35,7 +34,7 @@ public final class Onset{
 	 * This onset's id.
 	 * @return
 	 */
-	public Integer id(){
+	public int id(){
 		return this.id;
 	}
 
@@ -45,8 +44,8 @@ public final class Onset{
 	 * with no context. 
 	 * @return
 	 */
-	public Integer start(){
-		return range.lowerEndpoint();
+	public int start(){
+		return (int) (bits >> 32);
 	}
 
 	/**
@@ -54,8 +53,8 @@ public final class Onset{
 	 * any timeline.
 	 * @return
 	 */
-	public Integer duration(){
-		return end() - start() + 1;
+	public int duration(){
+		return (int) bits >>> 1;
 	}
 	
 	/**
@@ -64,8 +63,16 @@ public final class Onset{
 	 * with no context. 
 	 * @return
 	 */
-	public Integer end(){
-		return range.upperEndpoint();
+	public int end(){
+		return start() + duration() - 1;
+	}
+
+	/**
+	 * This onset as the closed range [Start, End].
+	 * @return
+	 */
+	public Range<Integer> range(){
+		return Range.closed(start(), end());
 	}
 
 	/**
@@ -76,8 +83,8 @@ public final class Onset{
 	 * @param context
 	 * @return
 	 */
-	public Integer start(Timeline context){
-		return context.getNecklace().wrapindex(range.lowerEndpoint());
+	public int start(Timeline context){
+		return Math.floorMod(start(), context.getNumberOfPulses());
 	}
 
 	/**
@@ -88,7 +95,7 @@ public final class Onset{
 	 * @return
 	 * The minimum length of an onset must be 1 by definition.
 	 */
-	public Integer duration(Timeline context){
+	public int duration(Timeline context){
 		return (end(context) - start(context)) + 1;
 	}
 
@@ -100,8 +107,8 @@ public final class Onset{
 	 * @param context
 	 * @return
 	 */
-	public Integer end(Timeline context){
-		return context.getNecklace().wrapindex(range.upperEndpoint());
+	public int end(Timeline context){
+		return Math.floorMod(end(), context.getNumberOfPulses());
 	}
 
 	/**
@@ -109,13 +116,13 @@ public final class Onset{
 	 * @return
 	 */
 	public boolean isAccent(){
-		return isAccent;
+		return (bits & 1) != 0;
 	}
 	
 	@Override
 	public String toString() {
 		return String.format("{# %d : %s : %d}", 
-				id(), range.toString(), duration());
+				id(), range().toString(), duration());
 	}
 
 
@@ -124,8 +131,8 @@ public final class Onset{
 	 * @param start
 	 * @param end
 	 */
-	public void setRange(Integer start, Integer end) {
-		this.range = Range.closed(start, end);
+	public void setRange(int start, int end) {
+		this.bits = pack(start, end - start + 1, isAccent());
 		
 	}
 
@@ -145,8 +152,8 @@ public final class Onset{
 	 * A positive of negative integer representing how many pulses
 	 * left or right to shift by.
 	 */
-	public void shift(Integer offset) {
-		this.range = Range.closed(start() + offset, end() + offset);
+	public void shift(int offset) {
+		this.bits = pack(start() + offset, duration(), isAccent());
 		
 	}
 
@@ -156,7 +163,7 @@ public final class Onset{
 	 * @param length
 	 */
 	public void extend(int length) {
-		this.range = Range.closed(start(), end() + length);
+		this.bits = pack(start(), duration() + length, isAccent());
 		
 	}
 	
@@ -172,23 +179,22 @@ public final class Onset{
 
 			@Override
 			public int compare(Onset o1, Onset o2) {
-				return o1.start(t).compareTo(o2.start(t));
+				return Integer.compare(o1.start(t), o2.start(t));
 			}
 		};
 	}
 
 	@Override
 	protected Object clone() throws CloneNotSupportedException {
-		Onset o = new Onset(start(), duration(), id());
+		Onset o = new Onset(start(), duration(), id(), isAccent());
 		return o;
 	}
 
-	
+	private static long pack(int start, int duration, boolean isAccent) throws IllegalArgumentException{
+		if(duration < 1){
+			throw new IllegalArgumentException("Duration must be >= 1. An Onset is an attack plus some number of rests.");
+		}
+		return ((long) start << 32) | ((duration & 0xFFFFFFFFL) << 1) | (isAccent ? 1 : 0);
+	}
 
-	
-	
-	
-	
-	
-	
 }
@@ -0,0 +1,277 @@
+package core;
+
+/**
+ * An immutable, height balanced binary tree of onsets ordered by onset
+ * number. Every node knows how many onsets and pulses its subtree spans, so
+ * onsets can be found by number or by pulse in O(log n). Edits copy only the
+ * path from the root to the edited node and share everything else with the
+ * original tree. <br>
+ * The empty tree is null; all operations are static so they accept it.
+ *
+ * @author kr0
+ *
+ */
+final class OnsetTree {
+
+	final OnsetTree left;
+	final OnsetTree right;
+	final int duration;
+	final boolean isAccent;
+	final int onsets;
+	final int pulses;
+	final byte height;
+
+	private OnsetTree(OnsetTree left, int duration, boolean isAccent, OnsetTree right) {
+		this.left = left;
+		this.right = right;
+		this.duration = duration;
+		this.isAccent = isAccent;
+		this.onsets = count(left) + 1 + count(right);
+		this.pulses = pulses(left) + duration + pulses(right);
+		this.height = (byte) (Math.max(height(left), height(right)) + 1);
+	}
+
+	/**
+	 * Number of onsets in this tree.
+	 *
+	 * @param t
+	 * @return
+	 */
+	static int count(OnsetTree t) {
+		return t == null ? 0 : t.onsets;
+	}
+
+	/**
+	 * Number of pulses spanned by the onsets of this tree.
+	 *
+	 * @param t
+	 * @return
+	 */
+	static int pulses(OnsetTree t) {
+		return t == null ? 0 : t.pulses;
+	}
+
+	private static int height(OnsetTree t) {
+		return t == null ? 0 : t.height;
+	}
+
+	/**
+	 * Builds a balanced tree from durations[from, to) in linear time.
+	 *
+	 * @param durations
+	 * @param accents
+	 *            may be null if no onset is accented
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	static OnsetTree build(int[] durations, boolean[] accents, int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+		int mid = (from + to) >>> 1;
+		return new OnsetTree(build(durations, accents, from, mid),
+				durations[mid],
+				accents != null && accents[mid],
+				build(durations, accents, mid + 1, to));
+	}
+
+	/**
+	 * Returns the node of the onset with this number.
+	 *
+	 * @param t
+	 * @param index
+	 *            0 <= index < count(t)
+	 * @return
+	 */
+	static OnsetTree get(OnsetTree t, int index) {
+		while (true) {
+			int leftCount = count(t.left);
+			if (index < leftCount) {
+				t = t.left;
+			} else if (index > leftCount) {
+				index -= leftCount + 1;
+				t = t.right;
+			} else {
+				return t;
+			}
+		}
+	}
+
+	/**
+	 * Returns the first pulse of the onset with this number, counted from the
+	 * first pulse of onset 0.
+	 *
+	 * @param t
+	 * @param index
+	 *            0 <= index <= count(t)
+	 * @return
+	 */
+	static int start(OnsetTree t, int index) {
+		int start = 0;
+		while (t != null) {
+			int leftCount = count(t.left);
+			if (index <= leftCount) {
+				t = t.left;
+			} else {
+				start += pulses(t.left) + t.duration;
+				index -= leftCount + 1;
+				t = t.right;
+			}
+		}
+		return start;
+	}
+
+	/**
+	 * Returns the number of the onset spanning this pulse, counted from the
+	 * first pulse of onset 0.
+	 *
+	 * @param t
+	 * @param pulse
+	 *            0 <= pulse < pulses(t)
+	 * @return
+	 */
+	static int indexAt(OnsetTree t, int pulse) {
+		int index = 0;
+		while (true) {
+			int leftPulses = pulses(t.left);
+			if (pulse < leftPulses) {
+				t = t.left;
+			} else if (pulse < leftPulses + t.duration) {
+				return index + count(t.left);
+			} else {
+				pulse -= leftPulses + t.duration;
+				index += count(t.left) + 1;
+				t = t.right;
+			}
+		}
+	}
+
+	/**
+	 * Returns a tree with a new onset inserted before the onset with this
+	 * number.
+	 *
+	 * @param t
+	 * @param index
+	 *            0 <= index <= count(t)
+	 * @param duration
+	 * @param isAccent
+	 * @return
+	 */
+	static OnsetTree insert(OnsetTree t, int index, int duration, boolean isAccent) {
+		if (t == null) {
+			return new OnsetTree(null, duration, isAccent, null);
+		}
+		int leftCount = count(t.left);
+		if (index <= leftCount) {
+			return balance(insert(t.left, index, duration, isAccent),
+					t.duration, t.isAccent, t.right);
+		}
+		return balance(t.left, t.duration, t.isAccent,
+				insert(t.right, index - leftCount - 1, duration, isAccent));
+	}
+
+	/**
+	 * Returns a tree without the onset with this number.
+	 *
+	 * @param t
+	 * @param index
+	 *            0 <= index < count(t)
+	 * @return
+	 */
+	static OnsetTree remove(OnsetTree t, int index) {
+		int leftCount = count(t.left);
+		if (index < leftCount) {
+			return balance(remove(t.left, index), t.duration, t.isAccent, t.right);
+		}
+		if (index > leftCount) {
+			return balance(t.left, t.duration, t.isAccent,
+					remove(t.right, index - leftCount - 1));
+		}
+		if (t.left == null) {
+			return t.right;
+		}
+		if (t.right == null) {
+			return t.left;
+		}
+		OnsetTree next = get(t.right, 0);
+		return balance(t.left, next.duration, next.isAccent, remove(t.right, 0));
+	}
+
+	/**
+	 * Returns a tree where the onset with this number has a new duration and
+	 * accent.
+	 *
+	 * @param t
+	 * @param index
+	 *            0 <= index < count(t)
+	 * @param duration
+	 * @param isAccent
+	 * @return
+	 */
+	static OnsetTree replace(OnsetTree t, int index, int duration, boolean isAccent) {
+		int leftCount = count(t.left);
+		if (index < leftCount) {
+			return new OnsetTree(replace(t.left, index, duration, isAccent),
+					t.duration, t.isAccent, t.right);
+		}
+		if (index > leftCount) {
+			return new OnsetTree(t.left, t.duration, t.isAccent,
+					replace(t.right, index - leftCount - 1, duration, isAccent));
+		}
+		return new OnsetTree(t.left, duration, isAccent, t.right);
+	}
+
+	/**
+	 * Copies durations and accents in onset order into the arrays, starting
+	 * at index at.
+	 *
+	 * @param t
+	 * @param durations
+	 * @param accents
+	 *            may be null
+	 * @param at
+	 * @return the index after the last onset written
+	 */
+	static int fill(OnsetTree t, int[] durations, boolean[] accents, int at) {
+		while (t != null) {
+			at = fill(t.left, durations, accents, at);
+			durations[at] = t.duration;
+			if (accents != null) {
+				accents[at] = t.isAccent;
+			}
+			at++;
+			t = t.right;
+		}
+		return at;
+	}
+
+	private static OnsetTree balance(OnsetTree l, int duration, boolean isAccent, OnsetTree r) {
+		int hl = height(l);
+		int hr = height(r);
+		if (hl > hr + 1) {
+			if (height(l.left) >= height(l.right)) {
+				return new OnsetTree(l.left, l.duration, l.isAccent,
+						new OnsetTree(l.right, duration, isAccent, r));
+			}
+			OnsetTree lr = l.right;
+			return new OnsetTree(
+					new OnsetTree(l.left, l.duration, l.isAccent, lr.left),
+					lr.duration, lr.isAccent,
+					new OnsetTree(lr.right, duration, isAccent, r));
+		}
+		if (hr > hl + 1) {
+			if (height(r.right) >= height(r.left)) {
+				return new OnsetTree(new OnsetTree(l, duration, isAccent, r.left),
+						r.duration, r.isAccent, r.right);
+			}
+			OnsetTree rl = r.left;
+			return new OnsetTree(
+					new OnsetTree(l, duration, isAccent, rl.left),
+					rl.duration, rl.isAccent,
+					new OnsetTree(rl.right, r.duration, r.isAccent, r.right));
+		}
+		return new OnsetTree(l, duration, isAccent, r);
+	}
+
+}
@@ -4,6 +4,11 @@ public enum Pulse {
 
 	REST("."), ACCENT("X"), ATTACK("x");
 	
+	/**
+	 * Cached copy of values(), indexed by ordinal.
+	 */
+	static final Pulse[] VALUES = values();
+	
 	private String repr;
 	private Pulse(String _repr){
 		repr = _repr;
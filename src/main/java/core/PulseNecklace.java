@@ -0,0 +1,438 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A necklace of pulses packed two bits per pulse into an array of longs.
+ * A PulseNecklace behaves like any other Necklace&lt;Pulse&gt; but stores 32
+ * pulses per word, and shifts, rotates, compares and hashes them a word at
+ * a time. <br>
+ * <b>Note -</b> null pulses can not be stored.
+ *
+ * @author kr0
+ *
+ */
+public class PulseNecklace extends Necklace<Pulse> {
+
+	static final int PULSES_PER_WORD = 32;
+	private static final long PULSE_MASK = 0b11L;
+	private static final long LOW_BITS = 0x5555555555555555L;
+
+	/*
+	 * Contribution of every byte (four pulses) to the list style hash code
+	 * of Necklace, so packed and generic necklaces hash alike.
+	 */
+	private static final int POW_31_4 = 31 * 31 * 31 * 31;
+	private static final int[] BYTE_HASH = new int[256];
+	static {
+		for (int b = 0; b < 256; b++) {
+			int hash = 0;
+			for (int j = 0; j < 4; j++) {
+				int code = (b >>> (j << 1)) & 3;
+				hash = 31 * hash + (code < Pulse.VALUES.length ? Pulse.VALUES[code].hashCode() : 0);
+			}
+			BYTE_HASH[b] = hash;
+		}
+	}
+
+	/*
+	 * Pulse i lives in bits 2(i mod 32) and 2(i mod 32) + 1 of word i / 32,
+	 * encoded as its ordinal. Bits past size are always zero.
+	 */
+	private long[] words;
+	private int size;
+	// pulse index of element 0, so rotating only moves the origin
+	private int origin;
+	// words are also used by another necklace and must be copied before writes
+	private boolean shared;
+
+	/**
+	 * Creates an empty necklace with default capacity of 16.
+	 */
+	public PulseNecklace() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public PulseNecklace(int capacity) {
+		super((ArrayList<Pulse>) null);
+		words = new long[wordsFor(capacity)];
+	}
+
+	public PulseNecklace(Necklace<Pulse> necklace) {
+		super((ArrayList<Pulse>) null);
+		if (necklace instanceof PulseNecklace) {
+			// copied on the first write to either necklace
+			PulseNecklace other = (PulseNecklace) necklace;
+			words = other.words;
+			size = other.size;
+			origin = other.origin;
+			shared = true;
+			other.shared = true;
+		} else {
+			words = new long[wordsFor(necklace.size())];
+			for (Pulse p : necklace) {
+				add(p);
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Pulse get(int index) {
+		return Pulse.VALUES[code(physical(wrapindex(index)))];
+	}
+
+	@Override
+	public void add(Pulse elem) {
+		materialize();
+		ensureCapacity(size + 1);
+		setCode(size, elem.ordinal());
+		size++;
+	}
+
+	@Override
+	public void add(Pulse elem, int index) {
+		if (size == 0 || index == size) {
+			add(elem);
+			return;
+		}
+		insert(wrapindex(index), elem.ordinal(), 1);
+	}
+
+	@Override
+	public Pulse remove(int index) {
+		if (size == 0) {
+			return null;
+		}
+		index = wrapindex(index);
+		Pulse removed = get(index);
+		delete(index, 1);
+		return removed;
+	}
+
+	@Override
+	public boolean set(Pulse elem, int index) {
+		if (size == 0) {
+			return false;
+		}
+		unshare();
+		setCode(physical(wrapindex(index)), elem.ordinal());
+		return true;
+	}
+
+	@Override
+	public boolean set(Pulse elem, int start, int end) {
+		if (size == 0) {
+			return false;
+		}
+		start = wrapindex(start);
+		end = wrapindex(end);
+		int code = elem.ordinal();
+		materialize();
+		if (start <= end) {
+			fill(words, start, end + 1, code);
+		} else {
+			fill(words, start, size, code);
+			fill(words, 0, end + 1, code);
+		}
+		return true;
+	}
+
+	@Override
+	public void add(Pulse elem, int index, int n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("Can not insert a negative number of elements.");
+		}
+		if (n == 0) {
+			return;
+		}
+		index = (size == 0 || index == size) ? size : wrapindex(index);
+		insert(index, elem.ordinal(), n);
+	}
+
+	@Override
+	public void removeRange(int start, int end) {
+		if (size == 0) {
+			return;
+		}
+		start = wrapindex(start);
+		end = wrapindex(end);
+		if (start <= end) {
+			delete(start, end - start + 1);
+		} else {
+			delete(start, size - start);
+			delete(0, end + 1);
+		}
+	}
+
+	@Override
+	public void rotateBy(int i) {
+		if (size == 0) {
+			return;
+		}
+		modified();
+		origin = Math.floorMod(origin - i, size);
+	}
+
+	@Override
+	public Iterator<Pulse> iterator() {
+		return new Iterator<Pulse>() {
+
+			private int cursor = 0;
+			private int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return cursor < size;
+			}
+
+			@Override
+			public Pulse next() {
+				if (cursor >= size) {
+					throw new NoSuchElementException();
+				}
+				last = cursor++;
+				return get(last);
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0) {
+					throw new IllegalStateException();
+				}
+				delete(last, 1);
+				cursor = last;
+				last = -1;
+			}
+		};
+	}
+
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		return new PulseNecklace(this);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof PulseNecklace)) {
+			return super.equals(obj);
+		}
+		PulseNecklace other = (PulseNecklace) obj;
+		if (size != other.size) {
+			return false;
+		}
+		if (origin != 0 || other.origin != 0) {
+			return super.equals(obj);
+		}
+		for (int w = wordsFor(size) - 1; w >= 0; w--) {
+			if (words[w] != other.words[w]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Same value as Necklace.hashCode(), computed four pulses at a time.
+	 */
+	@Override
+	public int hashCode() {
+		if (origin != 0) {
+			return super.hashCode();
+		}
+		int hash = 1;
+		int bytes = size >>> 2;
+		for (int b = 0; b < bytes; b++) {
+			int packed = (int) (words[b >>> 3] >>> ((b & 7) << 3)) & 0xFF;
+			hash = POW_31_4 * hash + BYTE_HASH[packed];
+		}
+		for (int i = bytes << 2; i < size; i++) {
+			hash = 31 * hash + Pulse.VALUES[code(i)].hashCode();
+		}
+		return hash;
+	}
+
+	@Override
+	public String toString(String delimiter) {
+		StringBuilder sb = new StringBuilder(size * (1 + delimiter.length()) + 2);
+		sb.append('[');
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(delimiter);
+			}
+			sb.append(Pulse.VALUES[code(physical(i))]);
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * Appends n rests. Cheaper than n calls to add(Pulse.REST) since unused
+	 * words are already zero.
+	 *
+	 * @param n
+	 */
+	void appendRests(int n) {
+		materialize();
+		ensureCapacity(size + n);
+		size += n;
+	}
+
+	@Override
+	int compareElements(int i, int j) {
+		return Integer.compare(code(physical(wrapindex(i))), code(physical(wrapindex(j))));
+	}
+
+	@Override
+	Necklace<Pulse> copy() {
+		return new PulseNecklace(this);
+	}
+
+	/**
+	 * Makes room for n pulses at index and fills them with code.
+	 */
+	private void insert(int index, int code, int n) {
+		materialize();
+		ensureCapacity(size + n);
+		move(words, index, words, index + n, size - index);
+		fill(words, index, index + n, code);
+		size += n;
+	}
+
+	/**
+	 * Removes n pulses starting at index and clears the freed tail.
+	 */
+	private void delete(int index, int n) {
+		materialize();
+		move(words, index + n, words, index, size - index - n);
+		fill(words, size - n, size, 0);
+		size -= n;
+	}
+
+	/**
+	 * Pulse index of the element at index, which must already be wrapped.
+	 */
+	private int physical(int index) {
+		int p = index + origin;
+		return p >= size ? p - size : p;
+	}
+
+	/**
+	 * Gives this necklace its own words.
+	 */
+	private void unshare() {
+		modified();
+		if (shared) {
+			words = words.clone();
+			shared = false;
+		}
+	}
+
+	/**
+	 * Gives this necklace its own words with element 0 at pulse 0, so that
+	 * pulses can be shifted a word at a time. Applying a rotation costs one
+	 * pass over the words.
+	 */
+	private void materialize() {
+		modified();
+		if (origin == 0) {
+			unshare();
+			return;
+		}
+		long[] rotated = new long[words.length];
+		move(words, origin, rotated, 0, size - origin);
+		move(words, 0, rotated, size - origin, origin);
+		words = rotated;
+		origin = 0;
+		shared = false;
+	}
+
+	private void ensureCapacity(int pulses) {
+		if (pulses > words.length * PULSES_PER_WORD) {
+			int grown = words.length + (words.length >> 1) + 1;
+			words = Arrays.copyOf(words, Math.max(wordsFor(pulses), grown));
+		}
+	}
+
+	private int code(int index) {
+		return (int) ((words[index >>> 5] >>> ((index & 31) << 1)) & PULSE_MASK);
+	}
+
+	private void setCode(int index, int code) {
+		modified();
+		int shift = (index & 31) << 1;
+		int w = index >>> 5;
+		words[w] = (words[w] & ~(PULSE_MASK << shift)) | ((long) code << shift);
+	}
+
+	static int wordsFor(int pulses) {
+		return (pulses + PULSES_PER_WORD - 1) >>> 5;
+	}
+
+	/**
+	 * Reads the (up to) 32 pulses starting at pulse. The first pulse is in
+	 * the lowest two bits.
+	 */
+	static long read(long[] words, int pulse) {
+		int bit = pulse << 1;
+		int w = bit >>> 6;
+		int offset = bit & 63;
+		long bits = words[w] >>> offset;
+		if (offset != 0 && w + 1 < words.length) {
+			bits |= words[w + 1] << (64 - offset);
+		}
+		return bits;
+	}
+
+	/**
+	 * Writes count (at most 32) pulses starting at pulse.
+	 */
+	static void write(long[] words, int pulse, long bits, int count) {
+		long mask = count == PULSES_PER_WORD ? -1L : (1L << (count << 1)) - 1;
+		bits &= mask;
+		int bit = pulse << 1;
+		int w = bit >>> 6;
+		int offset = bit & 63;
+		words[w] = (words[w] & ~(mask << offset)) | (bits << offset);
+		if (offset != 0 && offset + (count << 1) > 64) {
+			int carry = 64 - offset;
+			words[w + 1] = (words[w + 1] & ~(mask >>> carry)) | (bits >>> carry);
+		}
+	}
+
+	/**
+	 * Copies length pulses a word at a time. Like System.arraycopy, source
+	 * and destination may overlap.
+	 */
+	static void move(long[] src, int srcPos, long[] dst, int dstPos, int length) {
+		if (src != dst || dstPos <= srcPos) {
+			for (int i = 0; i < length; i += PULSES_PER_WORD) {
+				int count = Math.min(PULSES_PER_WORD, length - i);
+				write(dst, dstPos + i, read(src, srcPos + i), count);
+			}
+		} else {
+			for (int end = length; end > 0;) {
+				int count = Math.min(PULSES_PER_WORD, end);
+				end -= count;
+				write(dst, dstPos + end, read(src, srcPos + end), count);
+			}
+		}
+	}
+
+	/**
+	 * Sets pulses [from, to) to code.
+	 */
+	static void fill(long[] words, int from, int to, int code) {
+		long pattern = code * LOW_BITS;
+		for (int i = from; i < to; i += PULSES_PER_WORD) {
+			write(words, i, pattern, Math.min(PULSES_PER_WORD, to - i));
+		}
+	}
+
+}
@@ -1,44 +1,102 @@
 package core;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+import java.util.List;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 
+/**
+ * A Timeline that is changed in place. Onsets are kept in order as arrays of
+ * durations and accents, starting from onset 0 at some pulse, like an
+ * ImmutableTimeline. Onset numbers are positions in these arrays, so nothing
+ * is renumbered when an onset is added or removed. <br>
+ * The start of every onset comes from a Fenwick tree over the durations.
+ * Changing the length of an onset updates it in O(log k). Inserting or
+ * removing anywhere but at the end moves the later onsets down the arrays
+ * and leaves the tree to be rebuilt in O(k) on the next lookup, so a run of
+ * edits costs one rebuild.
+ */
 public class ResizeableTimeline implements Timeline {
 
 	private static final int EXPECTED_NUMBER_OF_ONSETS = Necklace.DEFAULT_CAPACITY;
 
-	private Necklace<Pulse> pulses;
-	private BiMap<Integer, Onset> onsets;
+	private int[] durations;
+	private boolean[] accents;
 	private int numberOfOnsets;
+	// pulse where onset 0 starts
+	private int offset;
+	private int numberOfPulses;
+
+	// starts of onsets relative to onset 0, only up to date when not stale
+	private final FenwickTree starts;
+	private boolean stale;
+	// pulses of this timeline, null until needed after a change
+	private PulseNecklace necklace;
 
 	/**
 	 * Empty Timeline
 	 */
 	public ResizeableTimeline() {
-		pulses = new Necklace<Pulse>();
-		onsets = HashBiMap.create(EXPECTED_NUMBER_OF_ONSETS);
-		numberOfOnsets = 0;
+		this(EXPECTED_NUMBER_OF_ONSETS);
+	}
+
+	public ResizeableTimeline(int... interOnsetInterval) throws IllegalArgumentException {
+		this(new TimelineBuilder(interOnsetInterval.length).addOnsets(interOnsetInterval));
+	}
+
+	ResizeableTimeline(TimelineBuilder builder) {
+		this(builder.getNumberOfOnsets());
+		numberOfOnsets = builder.getNumberOfOnsets();
+		builder.copyDurations(durations, accents);
+		offset = numberOfOnsets == 0 ? 0 : builder.getLeadingRests();
+		numberOfPulses = builder.getNumberOfPulses();
+		stale = true;
 	}
 
-	public ResizeableTimeline(int... interOnsetInterval) {
-		this();
-		for (int duration : interOnsetInterval) {
-			addOnset(duration);
+	/**
+	 * Reads the onsets off a pulse necklace. Every attack or accent starts
+	 * an onset which lasts until the next one.
+	 *
+	 * @param pulses
+	 */
+	protected ResizeableTimeline(Necklace<Pulse> pulses) {
+		this(EXPECTED_NUMBER_OF_ONSETS);
+		int size = pulses.size();
+		int first = -1;
+		int previous = 0;
+		for (int i = 0; i < size; i++) {
+			Pulse p = pulses.get(i);
+			if (p == Pulse.REST) {
+				continue;
+			}
+			if (numberOfOnsets == 0) {
+				first = i;
+			} else {
+				durations[numberOfOnsets - 1] = i - previous;
+			}
+			ensureCapacity(numberOfOnsets + 1);
+			accents[numberOfOnsets++] = p == Pulse.ACCENT;
+			previous = i;
+		}
+		if (numberOfOnsets > 0) {
+			durations[numberOfOnsets - 1] = first + size - previous;
 		}
+		offset = Math.max(first, 0);
+		numberOfPulses = size;
+		stale = true;
 	}
-	
-	protected ResizeableTimeline(Necklace<Pulse> pulses, Map<Integer, Onset> onsets){
-		this.pulses = pulses;
-		this.onsets = HashBiMap.create(onsets);
+
+	private ResizeableTimeline(int capacity) {
+		capacity = Math.max(capacity, 1);
+		durations = new int[capacity];
+		accents = new boolean[capacity];
+		starts = new FenwickTree(capacity);
 	}
 
 	/**
 	 * Adds an onset to the end of this Timeline.
-	 * 
+	 *
 	 * @param duration
 	 *            Duration must be >= 1.
 	 * @param isAccent
@@ -47,12 +105,12 @@ public class ResizeableTimeline implements Timeline {
 	 */
 	public void addOnset(int duration) throws IllegalArgumentException {
 		addOnset(duration, false);
-	
+
 	}
 
 	/**
 	 * Adds an onset to the end of this Timeline.
-	 * 
+	 *
 	 * @param duration
 	 *            Duration must be >= 1.
 	 * @param isAccent
@@ -61,14 +119,14 @@ public class ResizeableTimeline implements Timeline {
 	 */
 	public void addOnset(int duration, boolean isAccent)
 			throws IllegalArgumentException {
-		insertOnset(pulses.size(), duration, isAccent);
+		insertOnset(numberOfPulses, duration, isAccent);
 
 	}
 
 	/**
 	 * Inserts a new onset starting at a specific pulse. All subsequent pulses
 	 * are shifted to the right to make space.
-	 * 
+	 *
 	 * @param duration
 	 *            the length of any onset is >= 1
 	 * @param isAccent
@@ -80,8 +138,14 @@ public class ResizeableTimeline implements Timeline {
 
 	/**
 	 * Inserts a new onset starting at a specific pulse. All subsequent pulses
-	 * are shifted to the right to make space.
-	 * 
+	 * are shifted to the right to make space. <br>
+	 * <b>Note -</b> an onset inserted in the middle of another onset also
+	 * takes over the rests that followed the insertion point, since an onset
+	 * always lasts until the next attack.
+	 *
+	 * @param pulse
+	 *            understood modulo the number of pulses, except that
+	 *            pulse = getNumberOfPulses() appends
 	 * @param duration
 	 *            the length of any onset is >= 1
 	 * @param isAccent
@@ -89,19 +153,40 @@ public class ResizeableTimeline implements Timeline {
 	 */
 	public void insertOnset(int pulse, int duration, boolean isAccent)
 			throws IllegalArgumentException {
+		checkDuration(duration);
+		int n = numberOfPulses;
+		pulse = (n == 0 || pulse == n) ? n : Math.floorMod(pulse, n);
+
+		if (numberOfOnsets == 0) {
+			// the new onset absorbs every existing rest
+			insertAt(0, n + duration, isAccent);
+			offset = pulse;
+			numberOfPulses = n + duration;
+			return;
+		}
 
-		// Create onset
-		Onset onset = new Onset(pulse, duration, numberOfOnsets, isAccent);
-
-		// Put onset into map and necklace
-		onsets.put(onset.id(), onset);
-		pulses.add(isAccent ? Pulse.ACCENT : Pulse.ATTACK, pulse);
-		for (int i = 1; i < onset.duration(); i++) {
-			pulses.add(Pulse.REST, pulse + 1);
+		// position relative to onset 0
+		int position = pulse - offset;
+		if (pulse < offset) {
+			position += n;
+			offset += duration;
 		}
 
-		// Increment
-		numberOfOnsets++;
+		if (position == n) {
+			insertAt(numberOfOnsets, duration, isAccent);
+		} else {
+			int index = index().indexAt(position);
+			int start = index().prefix(index);
+			if (start == position) {
+				insertAt(index, duration, isAccent);
+			} else {
+				// split the onset we landed in
+				int remainder = start + durations[index] - position;
+				setDuration(index, position - start);
+				insertAt(index + 1, duration + remainder, isAccent);
+			}
+		}
+		numberOfPulses = n + duration;
 	}
 
 	/**
@@ -110,40 +195,33 @@ public class ResizeableTimeline implements Timeline {
 	 * @throws IllegalArgumentException
 	 */
 	public void removeOnset(Onset removeOnset) throws IllegalArgumentException {
-		int numberToRemove = getOnsetNumber(removeOnset);
-		int lengthRemoved = removeOnset.duration();
-
-		// Replace onset pulses with rests
-		pulses.set(Pulse.REST, removeOnset.start(), removeOnset.end());
-
-		// Adjust previous onset
-		Onset prevOnset = getOnset(getOnsetNumber(removeOnset) - 1);
-		prevOnset.extend(lengthRemoved);
-		onsets.forcePut(prevOnset.id(), prevOnset);
-
-		// Remove
-		onsets.remove(numberToRemove);
-
-		// Renumber onsets
-		for (int i = 0; i < numberOfOnsets; i++) {
-			if (i > numberToRemove) {
-				Onset adjOnset = getOnset(i);
-				adjOnset.setId(i - 1);
-				onsets.forcePut(adjOnset.id(), adjOnset);
-			}
-		}
-
-		numberOfOnsets--;
-
+		removeOnset(getOnsetNumber(removeOnset));
 	}
 
 	/**
 	 * Removes a specific onset. All pulses of the onset
-	 * become rests.
+	 * become rests, which extend the previous onset.
 	 * @param i
+	 * @throws IllegalArgumentException
 	 */
-	public void removeOnset(int i) {
-		removeOnset(getOnset(i));
+	public void removeOnset(int i) throws IllegalArgumentException {
+		int k = numberOfOnsets;
+		if (k == 0) {
+			throw new IllegalArgumentException("There are no onsets to remove.");
+		}
+		if (k == 1) {
+			removeAt(0);
+			offset = 0;
+			return;
+		}
+		i = wrapOnsetIndex(i);
+		int removed = durations[i];
+		int previous = (i == 0) ? k - 1 : i - 1;
+		setDuration(previous, durations[previous] + removed);
+		removeAt(i);
+		if (i == 0) {
+			offset = (offset + removed) % numberOfPulses;
+		}
 	}
 
 	/**
@@ -157,15 +235,36 @@ public class ResizeableTimeline implements Timeline {
 	 */
 	public void replaceOnset(int i, int duration, boolean isAccent)
 			throws IllegalArgumentException {
-		// TODO
+		checkDuration(duration);
+		if (numberOfOnsets == 0) {
+			throw new IllegalArgumentException("There are no onsets to replace.");
+		}
+		i = wrapOnsetIndex(i);
+		int oldDuration = durations[i];
+		int delta = duration - oldDuration;
+
+		// Pulses are added or removed at the end of the onset. Any of them
+		// that wrap past the last pulse move onset 0.
+		int end = offset + index().prefix(i) + oldDuration;
+		if (end > numberOfPulses) {
+			if (delta > 0) {
+				offset += delta;
+			} else {
+				offset -= end - Math.max(end + delta, numberOfPulses);
+			}
+		}
+
+		setDuration(i, duration);
+		accents[i] = isAccent;
+		numberOfPulses += delta;
 	}
 
-	
+
 	@Override
 	public int getNumberOfPulses() {
-		return pulses.size();
+		return numberOfPulses;
 	}
-	
+
 	@Override
 	public int getNumberOfOnsets() {
 		return numberOfOnsets;
@@ -173,39 +272,234 @@ public class ResizeableTimeline implements Timeline {
 
 	@Override
 	public Onset getOnset(int i) {
-		return onsets.get(wrapOnsetIndex(i));
+		i = wrapOnsetIndex(i);
+		return new Onset(onsetStart(i), durations[i], i, accents[i]);
 	}
 
 	@Override
 	public int getOnsetNumber(Onset onset) {
-		return wrapOnsetIndex(onsets.inverse().get(onset));
+		return onsetAt(onset.start());
 	}
 
 	@Override
 	public BiMap<Integer, Onset> getOnsets() {
-		return HashBiMap.create(onsets);
+		BiMap<Integer, Onset> map = HashBiMap.create(numberOfOnsets);
+		int start = offset;
+		for (int i = 0; i < numberOfOnsets; i++) {
+			map.put(i, new Onset(start % numberOfPulses, durations[i], i, accents[i]));
+			start += durations[i];
+		}
+		return map;
 	}
 
-	
+
 	@Override
 	public Necklace<Pulse> getNecklace() {
-		return new Necklace<Pulse>(pulses);
+		return new PulseNecklace(necklace());
+	}
+
+	@Override
+	public Pulse pulseAt(int pulse) {
+		if (numberOfOnsets == 0) {
+			return Pulse.REST;
+		}
+		int position = Math.floorMod(pulse - offset, numberOfPulses);
+		int index = index().indexAt(position);
+		if (index().prefix(index) != position) {
+			return Pulse.REST;
+		}
+		return accents[index] ? Pulse.ACCENT : Pulse.ATTACK;
+	}
+
+	@Override
+	public int onsetAt(int pulse) {
+		if (numberOfOnsets == 0) {
+			return -1;
+		}
+		return index().indexAt(Math.floorMod(pulse - offset, numberOfPulses));
+	}
+
+	@Override
+	public int onsetStart(int i) {
+		return (offset + index().prefix(wrapOnsetIndex(i))) % numberOfPulses;
+	}
+
+	/**
+	 * Onsets that wrap past the last pulse are copied to the front.
+	 */
+	@Override
+	public int copyOnsetPositions(int[] dest) {
+		int k = numberOfOnsets;
+		int wrapped = k;
+		int start = offset;
+		for (int i = 0; i < k; i++) {
+			if (start >= numberOfPulses) {
+				wrapped = i;
+				break;
+			}
+			start += durations[i];
+		}
+		int count = 0;
+		for (int i = wrapped; i < k; i++) {
+			dest[count++] = start - numberOfPulses;
+			start += durations[i];
+		}
+		start = offset;
+		for (int i = 0; i < wrapped; i++) {
+			dest[count++] = start;
+			start += durations[i];
+		}
+		return k;
 	}
 
-	
+
 	@Override
 	public int wrapOnsetIndex(int i) {
 		return Math.floorMod(i, numberOfOnsets);
 	}
 
+	@Override
+	public int wrapPulseIndex(int i) {
+		return Math.floorMod(i, getNumberOfPulses());
+	}
+
+	@Override
+	public List<Pulse> pulseView() {
+		return TimelineViews.pulses(this);
+	}
+
+	@Override
+	public List<Onset> onsetView() {
+		return TimelineViews.onsets(this);
+	}
+
+
+	@Override
+	public Timeline canonicalRotation() {
+		return rotatedBy(-necklace().leastRotation());
+	}
+
+	@Override
+	public int rotationHashCode() {
+		return necklace().rotationHashCode();
+	}
+
+	@Override
+	public boolean equalsUnderRotation(Timeline other) {
+		if (other == this) {
+			return true;
+		}
+		return other != null
+				&& getNumberOfPulses() == other.getNumberOfPulses()
+				&& getNumberOfOnsets() == other.getNumberOfOnsets()
+				&& rotationHashCode() == other.rotationHashCode()
+				&& necklace().equalsUnderRotation(other.getNecklace());
+	}
+
+	/**
+	 * A copy of this timeline with every onset moved i pulses to the right.
+	 * Only onset 0's position changes.
+	 * @param i
+	 * @return
+	 */
+	ResizeableTimeline rotatedBy(int i) {
+		ResizeableTimeline rotated = copy();
+		if (numberOfPulses > 0) {
+			rotated.offset = Math.floorMod(offset + i, numberOfPulses);
+		}
+		return rotated;
+	}
 
 	@Override
 	public Object clone() throws CloneNotSupportedException {
-		ResizeableTimeline clone = new ResizeableTimeline();
-		clone.numberOfOnsets = new Integer(this.numberOfOnsets);
-		clone.onsets = HashBiMap.create(this.onsets);
-		clone.pulses = (Necklace<Pulse>) this.pulses.clone();
-		return clone;
+		return copy();
+	}
+
+	private ResizeableTimeline copy() {
+		ResizeableTimeline copy = new ResizeableTimeline(numberOfOnsets);
+		System.arraycopy(durations, 0, copy.durations, 0, numberOfOnsets);
+		System.arraycopy(accents, 0, copy.accents, 0, numberOfOnsets);
+		copy.numberOfOnsets = numberOfOnsets;
+		copy.offset = offset;
+		copy.numberOfPulses = numberOfPulses;
+		copy.stale = true;
+		return copy;
+	}
+
+	/**
+	 * The starts of the onsets, brought up to date first if needed.
+	 */
+	private FenwickTree index() {
+		if (stale) {
+			starts.build(durations, numberOfOnsets);
+			stale = false;
+		}
+		return starts;
+	}
+
+	private PulseNecklace necklace() {
+		if (necklace == null) {
+			PulseNecklace pulses = new PulseNecklace(numberOfPulses);
+			pulses.appendRests(numberOfPulses);
+			int start = offset;
+			for (int i = 0; i < numberOfOnsets; i++) {
+				pulses.set(accents[i] ? Pulse.ACCENT : Pulse.ATTACK, start);
+				start += durations[i];
+			}
+			necklace = pulses;
+		}
+		return necklace;
+	}
+
+	private void insertAt(int index, int duration, boolean isAccent) {
+		ensureCapacity(numberOfOnsets + 1);
+		int moved = numberOfOnsets - index;
+		System.arraycopy(durations, index, durations, index + 1, moved);
+		System.arraycopy(accents, index, accents, index + 1, moved);
+		durations[index] = duration;
+		accents[index] = isAccent;
+		numberOfOnsets++;
+		if (moved == 0 && !stale) {
+			starts.append(duration);
+		} else {
+			stale = true;
+		}
+		necklace = null;
+	}
+
+	private void removeAt(int index) {
+		int moved = numberOfOnsets - index - 1;
+		System.arraycopy(durations, index + 1, durations, index, moved);
+		System.arraycopy(accents, index + 1, accents, index, moved);
+		numberOfOnsets--;
+		if (moved == 0 && !stale) {
+			starts.truncate(numberOfOnsets);
+		} else {
+			stale = true;
+		}
+		necklace = null;
+	}
+
+	private void setDuration(int index, int duration) {
+		if (!stale) {
+			starts.add(index, duration - durations[index]);
+		}
+		durations[index] = duration;
+		necklace = null;
+	}
+
+	private void ensureCapacity(int onsets) {
+		if (onsets > durations.length) {
+			int grown = Math.max(onsets, durations.length + (durations.length >> 1));
+			durations = Arrays.copyOf(durations, grown);
+			accents = Arrays.copyOf(accents, grown);
+		}
+	}
+
+	private static void checkDuration(int duration) throws IllegalArgumentException {
+		if (duration < 1) {
+			throw new IllegalArgumentException("Duration must be >= 1. An Onset is an attack plus some number of rests.");
+		}
 	}
 
 }
@@ -1,5 +1,6 @@
 package core;
 
+import java.util.List;
 import java.util.Map;
 
 import com.google.common.collect.BiMap;
@@ -46,6 +47,52 @@ public interface Timeline {
 	 */
 	public Necklace<Pulse> getNecklace();
 
+	/**
+	 * Returns the pulse at this index, wrapped modulo the number of pulses.
+	 * @param pulse
+	 * @return
+	 */
+	public Pulse pulseAt(int pulse);
+
+	/**
+	 * Returns the number of the onset whose attack or rests fall on this
+	 * pulse, wrapped modulo the number of pulses. Takes O(log k) time.
+	 * @param pulse
+	 * @return the onset number, or -1 when there are no onsets
+	 */
+	public int onsetAt(int pulse);
+
+	/**
+	 * Returns the pulse where an onset starts, wrapped modulo the number of
+	 * onsets. Takes O(log k) time and, unlike getOnset(i), allocates nothing.
+	 * @param i
+	 * @return
+	 */
+	public int onsetStart(int i);
+
+	/**
+	 * Copies the pulse where each onset starts into dest, in increasing
+	 * order. Nothing is allocated.
+	 * @param dest
+	 *            must hold at least getNumberOfOnsets() values
+	 * @return the number of onsets copied
+	 */
+	public int copyOnsetPositions(int[] dest);
+
+	/**
+	 * A read-only view of this timeline's pulses. Unlike getNecklace()
+	 * nothing is copied.
+	 * @return
+	 */
+	public List<Pulse> pulseView();
+
+	/**
+	 * A read-only view of this timeline's onsets in onset number order.
+	 * Unlike getOnsets() nothing is copied.
+	 * @return
+	 */
+	public List<Onset> onsetView();
+
 	/**
 	 * Wraps index to circular timeline.
 	 * 
@@ -53,6 +100,36 @@ public interface Timeline {
 	 * @return
 	 */
 	public int wrapOnsetIndex(int i);
+
+	/**
+	 * Wraps pulse index to circular timeline.
+	 * 
+	 * @param i
+	 * @return
+	 */
+	public int wrapPulseIndex(int i);
+
+	/**
+	 * Returns this timeline rotated so that its pulses are in canonical
+	 * rotation form (see Necklace.canonicalRotation()). Two timelines are
+	 * rotations of each other exactly when their canonical rotations have
+	 * the same pulses.
+	 * @return
+	 */
+	public Timeline canonicalRotation();
+
+	/**
+	 * A hash code shared by every rotation of this timeline.
+	 * @return
+	 */
+	public int rotationHashCode();
+
+	/**
+	 * Is other some rotation of this timeline?
+	 * @param other
+	 * @return
+	 */
+	public boolean equalsUnderRotation(Timeline other);
 	
 
 
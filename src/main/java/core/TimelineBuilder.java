@@ -0,0 +1,174 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Collects onsets and rests and builds either kind of Timeline from them in
+ * one linear pass. Rests added before the first onset are the tail of the
+ * last onset, which wraps around, so the first onset starts on the pulse
+ * after them. <br>
+ * A builder can go on being used after a build; every Timeline built is
+ * independent of it.
+ *
+ * @author kr0
+ *
+ */
+public final class TimelineBuilder {
+
+	private int[] durations;
+	private boolean[] accents;
+	private int numberOfOnsets;
+	private int leadingRests;
+	private long numberOfPulses;
+
+	public TimelineBuilder() {
+		this(Necklace.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param expectedOnsets
+	 *            room to reserve up front
+	 */
+	public TimelineBuilder(int expectedOnsets) {
+		int capacity = Math.max(expectedOnsets, 1);
+		durations = new int[capacity];
+		accents = new boolean[capacity];
+	}
+
+	/**
+	 * Appends an onset.
+	 * @param duration
+	 *            Duration must be >= 1.
+	 * @return this
+	 * @throws IllegalArgumentException
+	 */
+	public TimelineBuilder addOnset(int duration) throws IllegalArgumentException {
+		return addOnset(duration, false);
+	}
+
+	/**
+	 * Appends an onset.
+	 * @param duration
+	 *            Duration must be >= 1.
+	 * @param isAccent
+	 * @return this
+	 * @throws IllegalArgumentException
+	 */
+	public TimelineBuilder addOnset(int duration, boolean isAccent) throws IllegalArgumentException {
+		if (duration < 1) {
+			throw new IllegalArgumentException("Duration must be >= 1. An Onset is an attack plus some number of rests.");
+		}
+		addPulses(duration);
+		if (numberOfOnsets == durations.length) {
+			durations = Arrays.copyOf(durations, numberOfOnsets + (numberOfOnsets >> 1) + 1);
+			accents = Arrays.copyOf(accents, durations.length);
+		}
+		durations[numberOfOnsets] = duration;
+		accents[numberOfOnsets++] = isAccent;
+		return this;
+	}
+
+	/**
+	 * Appends unaccented onsets with these inter-onset intervals.
+	 * @param interOnsetInterval
+	 * @return this
+	 * @throws IllegalArgumentException
+	 */
+	public TimelineBuilder addOnsets(int... interOnsetInterval) throws IllegalArgumentException {
+		for (int duration : interOnsetInterval) {
+			addOnset(duration);
+		}
+		return this;
+	}
+
+	/**
+	 * Appends rests, which lengthen the last onset.
+	 * @param n
+	 * @return this
+	 * @throws IllegalArgumentException
+	 */
+	public TimelineBuilder addRests(int n) throws IllegalArgumentException {
+		if (n < 0) {
+			throw new IllegalArgumentException("Number of rests must be >= 0.");
+		}
+		addPulses(n);
+		if (numberOfOnsets == 0) {
+			leadingRests += n;
+		} else {
+			durations[numberOfOnsets - 1] += n;
+		}
+		return this;
+	}
+
+	/**
+	 * Appends a single pulse.
+	 * @param p
+	 * @return this
+	 */
+	public TimelineBuilder addPulse(Pulse p) {
+		return p == Pulse.REST ? addRests(1) : addOnset(1, p == Pulse.ACCENT);
+	}
+
+	public int getNumberOfOnsets() {
+		return numberOfOnsets;
+	}
+
+	public int getNumberOfPulses() {
+		return (int) numberOfPulses;
+	}
+
+	/**
+	 * Builds a persistent Timeline.
+	 * @return
+	 */
+	public ImmutableTimeline buildImmutable() {
+		if (numberOfOnsets == 0) {
+			return new ImmutableTimeline(null, 0, leadingRests);
+		}
+		int[] wrapped = wrappedDurations();
+		return new ImmutableTimeline(OnsetTree.build(wrapped, accents, 0, numberOfOnsets),
+				leadingRests, (int) numberOfPulses);
+	}
+
+	/**
+	 * Builds a mutable Timeline straight from the durations and accents
+	 * collected so far.
+	 * @return
+	 */
+	public ResizeableTimeline buildResizeable() {
+		return new ResizeableTimeline(this);
+	}
+
+	/**
+	 * Rests before the first onset, which become the tail of the last one.
+	 */
+	int getLeadingRests() {
+		return leadingRests;
+	}
+
+	/**
+	 * Copies the durations of the onsets, the last one including the leading
+	 * rests, and whether each is accented.
+	 */
+	void copyDurations(int[] durations, boolean[] accents) {
+		System.arraycopy(wrappedDurations(), 0, durations, 0, numberOfOnsets);
+		System.arraycopy(this.accents, 0, accents, 0, numberOfOnsets);
+	}
+
+	private int[] wrappedDurations() {
+		if (leadingRests == 0) {
+			return durations;
+		}
+		int[] wrapped = Arrays.copyOf(durations, numberOfOnsets);
+		wrapped[numberOfOnsets - 1] += leadingRests;
+		return wrapped;
+	}
+
+	private void addPulses(int n) throws IllegalArgumentException {
+		if (numberOfPulses + n > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many pulses.");
+		}
+		numberOfPulses += n;
+	}
+
+}
@@ -0,0 +1,76 @@
+package core;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Read-only list views over a Timeline. The views copy nothing; they read
+ * through to the timeline on every access, so they see later changes to a
+ * ResizeableTimeline.
+ *
+ * @author kr0
+ *
+ */
+final class TimelineViews {
+
+	private TimelineViews() {
+	}
+
+	/**
+	 * The pulses of t, indexed from 0 to t.getNumberOfPulses() - 1.
+	 * @param t
+	 * @return
+	 */
+	static List<Pulse> pulses(Timeline t) {
+		return new PulseView(t);
+	}
+
+	/**
+	 * The onsets of t in onset number order.
+	 * @param t
+	 * @return
+	 */
+	static List<Onset> onsets(Timeline t) {
+		return new OnsetView(t);
+	}
+
+	private static final class PulseView extends AbstractList<Pulse> implements RandomAccess {
+		private final Timeline t;
+
+		PulseView(Timeline t) {
+			this.t = t;
+		}
+
+		@Override
+		public Pulse get(int index) {
+			return t.pulseAt(Preconditions.checkElementIndex(index, size()));
+		}
+
+		@Override
+		public int size() {
+			return t.getNumberOfPulses();
+		}
+	}
+
+	private static final class OnsetView extends AbstractList<Onset> implements RandomAccess {
+		private final Timeline t;
+
+		OnsetView(Timeline t) {
+			this.t = t;
+		}
+
+		@Override
+		public Onset get(int index) {
+			return t.getOnset(Preconditions.checkElementIndex(index, size()));
+		}
+
+		@Override
+		public int size() {
+			return t.getNumberOfOnsets();
+		}
+	}
+
+}
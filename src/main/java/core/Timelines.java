@@ -1,10 +1,12 @@
 package core;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.function.LongBinaryOperator;
+import java.util.stream.Collectors;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
+import com.google.common.base.Equivalence;
+import com.google.common.primitives.Ints;
 
 /**
  * A utility class for manipulating Timelines.
@@ -13,65 +15,455 @@ import com.google.common.collect.HashBiMap;
  */
 public final class Timelines {
 
-	
-	
-	public static Timeline applyRhythmicContour(Timeline t, List<Integer> contour){
-		BiMap<Integer, Onset> onsets = t.getOnsets();
-		Necklace<Pulse> pulses = t.getNecklace();
-		
-		onsets.inverse().forEach((onset, id) ->
-			onsets.merge(id, onset, (k, v) ->
-				{
-					int offset = contour.get(id);
-					Onset newOnset = new Onset(onset.start(), onset.duration() + offset, onset.id());
-					
-					if(offset > 0){
-						pulses.extend(onset.start(), Pulse.REST, offset);
-					} else if (offset < 0){
-						pulses.shrink(onset.end(), onset.end() + offset);
-					}
-					return newOnset;
-				}));
-		
-		return new ImmutableTimeline(pulses, onsets);
+	private static final Equivalence<Timeline> UNDER_ROTATION = new Equivalence<Timeline>() {
+
+		@Override
+		protected boolean doEquivalent(Timeline a, Timeline b) {
+			return a.equalsUnderRotation(b);
+		}
+
+		@Override
+		protected int doHash(Timeline t) {
+			return t.rotationHashCode();
+		}
+	};
+
+	/**
+	 * Equivalence of timelines up to rotation. Wrap timelines with it to use
+	 * rotation classes as hash keys, e.g.
+	 * <code>set.add(Timelines.underRotation().wrap(t))</code>.
+	 * @return
+	 */
+	public static Equivalence<Timeline> underRotation() {
+		return UNDER_ROTATION;
 	}
-	
-	public static Timeline union(Timeline t1, Timeline t2){
-		return t1;
+
+	/**
+	 * The Euclidean rhythm E(onsets, pulses): onsets spread as evenly as
+	 * possible over pulses. Onset 0 falls on pulse 0. Recently requested
+	 * rhythms are cached, so asking again for a common pattern returns the
+	 * same instance without allocating.
+	 * @param onsets
+	 * @param pulses
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public static Timeline euclidean(int onsets, int pulses) throws IllegalArgumentException {
+		return EuclideanRhythms.get(onsets, pulses, 0);
 	}
-	
-	public static Timeline intersection(Timeline t1, Timeline t2){
-		return t1;
+
+	/**
+	 * The Euclidean rhythm E(onsets, pulses) rotated by some number of
+	 * pulses, so onset 0 falls on pulse rotation.
+	 * @param onsets
+	 * @param pulses
+	 * @param rotation
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public static Timeline euclidean(int onsets, int pulses, int rotation)
+			throws IllegalArgumentException {
+		return EuclideanRhythms.get(onsets, pulses, rotation);
 	}
-	
-	public static Timeline difference(Timeline t1, Timeline t2){
-		return t1;
+
+	/**
+	 * Parses box notation such as [x..X..x.] in a single pass: '.' is a rest,
+	 * 'x' an attack and 'X' an accent. The brackets are optional. This is the
+	 * inverse of Geometry.boxNotation(Timeline).
+	 * @param box
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             on any other character
+	 */
+	public static Timeline parseBoxNotation(CharSequence box) throws IllegalArgumentException {
+		int from = 0;
+		int to = box.length();
+		if (to - from >= 2 && box.charAt(0) == '[' && box.charAt(to - 1) == ']') {
+			from++;
+			to--;
+		}
+		int n = to - from;
+		int[] durations = new int[Math.min(n, 16)];
+		boolean[] accents = new boolean[durations.length];
+		int k = 0;
+		int first = 0;
+		int previous = 0;
+		for (int i = 0; i < n; i++) {
+			char c = box.charAt(from + i);
+			if (c == '.') {
+				continue;
+			}
+			if (c != 'x' && c != 'X') {
+				throw new IllegalArgumentException("Unexpected '" + c + "' at " + (from + i) + " in box notation.");
+			}
+			if (k == durations.length) {
+				durations = Arrays.copyOf(durations, Math.min(n, 2 * k));
+				accents = Arrays.copyOf(accents, durations.length);
+			}
+			if (k == 0) {
+				first = i;
+			} else {
+				durations[k - 1] = i - previous;
+			}
+			accents[k++] = c == 'X';
+			previous = i;
+		}
+		if (k == 0) {
+			return new ImmutableTimeline(null, 0, n);
+		}
+		durations[k - 1] = first + n - previous;
+		return new ImmutableTimeline(OnsetTree.build(durations, accents, 0, k), first, n);
+	}
+
+	/**
+	 * Parses inter-onset intervals such as [3-3-2] in a single pass. The
+	 * brackets are optional. This is the inverse of
+	 * Geometry.interOnsetIntervalString(Timeline).
+	 * @param ioi
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if an interval is missing or not a positive integer
+	 */
+	public static Timeline parseIoi(CharSequence ioi) throws IllegalArgumentException {
+		int from = 0;
+		int to = ioi.length();
+		if (to - from >= 2 && ioi.charAt(0) == '[' && ioi.charAt(to - 1) == ']') {
+			from++;
+			to--;
+		}
+		if (from == to) {
+			return new ImmutableTimeline();
+		}
+		int[] durations = new int[16];
+		int k = 0;
+		int value = 0;
+		boolean digits = false;
+		for (int i = from; i <= to; i++) {
+			char c = i < to ? ioi.charAt(i) : '-';
+			if (c >= '0' && c <= '9') {
+				if (value > (Integer.MAX_VALUE - 9) / 10) {
+					throw new IllegalArgumentException("Interval too large at " + i + ".");
+				}
+				value = 10 * value + (c - '0');
+				digits = true;
+			} else if (c == '-') {
+				if (!digits || value < 1) {
+					throw new IllegalArgumentException("Expected an interval >= 1 before " + i + ".");
+				}
+				if (k == durations.length) {
+					durations = Arrays.copyOf(durations, 2 * k);
+				}
+				durations[k++] = value;
+				value = 0;
+				digits = false;
+			} else {
+				throw new IllegalArgumentException("Unexpected '" + c + "' at " + i + " in inter-onset intervals.");
+			}
+		}
+		return new ImmutableTimeline(OnsetTree.build(durations, null, 0, k), 0, sum(durations, k));
+	}
+
+	private static int sum(int[] values, int length) {
+		long sum = 0;
+		for (int i = 0; i < length; i++) {
+			sum += values[i];
+		}
+		if (sum > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many pulses.");
+		}
+		return (int) sum;
 	}
 	
+	/**
+	 * Lengthens or shortens every onset of t by the matching entry of
+	 * contour, taking onsets in the order they start from pulse 0. The first
+	 * onset keeps its pulse, wrapped around when the new timeline is no
+	 * longer than that.
+	 * @param t
+	 * @param contour
+	 *            at least one entry per onset
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if an onset would be shortened to nothing
+	 */
+	public static Timeline applyRhythmicContour(Timeline t, List<Integer> contour) throws IllegalArgumentException {
+		return applyRhythmicContour(t, Ints.toArray(contour));
+	}
+
+	/**
+	 * Lengthens or shortens every onset of t by the matching entry of
+	 * contour. The first onset keeps its pulse, wrapped around when the new
+	 * timeline is no longer than that. The new inter-onset intervals are
+	 * worked out in one pass and the result is built from them directly, in
+	 * O(k) time whatever the number of pulses.
+	 * @param t
+	 * @param contour
+	 *            at least one entry per onset
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if an onset would be shortened to nothing
+	 */
+	public static Timeline applyRhythmicContour(Timeline t, int[] contour) throws IllegalArgumentException {
+		int k = t.getNumberOfOnsets();
+		int n = t.getNumberOfPulses();
+		if(k == 0){
+			return new ImmutableTimeline(null, 0, n);
+		}
+		if(contour.length < k){
+			throw new IllegalArgumentException("A contour of " + contour.length + " can not change " + k + " onsets.");
+		}
+
+		// positions become durations in place, front to back
+		int[] durations = new int[k];
+		t.copyOnsetPositions(durations);
+		int first = durations[0];
+		boolean[] accents = null;
+		long pulses = 0;
+		for(int i = 0; i < k; i++){
+			int start = durations[i];
+			int next = i + 1 < k ? durations[i + 1] : first + n;
+			long duration = (long) next - start + contour[i];
+			if(duration < 1){
+				throw new IllegalArgumentException("Onset " + i + " is too short to shrink by " + (-contour[i]) + ".");
+			}
+			if(t.pulseAt(start) == Pulse.ACCENT){
+				if(accents == null){
+					accents = new boolean[k];
+				}
+				accents[i] = true;
+			}
+			durations[i] = (int) duration;
+			pulses += duration;
+		}
+		if(pulses > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("Too many pulses.");
+		}
+		return new ImmutableTimeline(OnsetTree.build(durations, accents, 0, k), first % (int) pulses, (int) pulses);
+	}
+
+	/**
+	 * Applies one contour to every timeline, in parallel.
+	 * @param timelines
+	 * @param contour
+	 *            at least one entry per onset of every timeline
+	 * @return the changed timelines, in order
+	 * @throws IllegalArgumentException
+	 *             if an onset of any timeline would be shortened to nothing
+	 */
+	public static List<Timeline> applyRhythmicContour(List<? extends Timeline> timelines, List<Integer> contour)
+			throws IllegalArgumentException {
+		int[] values = Ints.toArray(contour);
+		return timelines.parallelStream()
+				.map(t -> applyRhythmicContour(t, values))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Every onset of either timeline. Timelines of different lengths are
+	 * stretched onto the least common multiple of their numbers of pulses.
+	 * An onset is accented when it is accented in either timeline.
+	 * @param t1
+	 * @param t2
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the common grid has more than Integer.MAX_VALUE pulses
+	 */
+	public static Timeline union(Timeline t1, Timeline t2) throws IllegalArgumentException {
+		return union(t1, t2, commonGrid(t1, t2));
+	}
+
+	/**
+	 * Every onset of either timeline, both stretched onto a grid of some
+	 * number of pulses.
+	 * @param t1
+	 * @param t2
+	 * @param pulses
+	 *            a multiple of the number of pulses of both timelines
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public static Timeline union(Timeline t1, Timeline t2, int pulses) throws IllegalArgumentException {
+		return combine(t1, t2, pulses, (a, b) -> a | b);
+	}
+
+	/**
+	 * The onsets the timelines have in common, on the least common multiple
+	 * of their numbers of pulses.
+	 * @param t1
+	 * @param t2
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the common grid has more than Integer.MAX_VALUE pulses
+	 */
+	public static Timeline intersection(Timeline t1, Timeline t2) throws IllegalArgumentException {
+		return intersection(t1, t2, commonGrid(t1, t2));
+	}
+
+	/**
+	 * The onsets the timelines have in common, both stretched onto a grid
+	 * of some number of pulses.
+	 * @param t1
+	 * @param t2
+	 * @param pulses
+	 *            a multiple of the number of pulses of both timelines
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public static Timeline intersection(Timeline t1, Timeline t2, int pulses) throws IllegalArgumentException {
+		return combine(t1, t2, pulses, (a, b) -> a & b);
+	}
+
+	/**
+	 * The onsets of t1 that are not onsets of t2, on the least common
+	 * multiple of their numbers of pulses.
+	 * @param t1
+	 * @param t2
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the common grid has more than Integer.MAX_VALUE pulses
+	 */
+	public static Timeline difference(Timeline t1, Timeline t2) throws IllegalArgumentException {
+		return difference(t1, t2, commonGrid(t1, t2));
+	}
+
+	/**
+	 * The onsets of t1 that are not onsets of t2, both stretched onto a grid
+	 * of some number of pulses.
+	 * @param t1
+	 * @param t2
+	 * @param pulses
+	 *            a multiple of the number of pulses of both timelines
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public static Timeline difference(Timeline t1, Timeline t2, int pulses) throws IllegalArgumentException {
+		return combine(t1, t2, pulses, (a, b) -> a & ~b);
+	}
+
+	/**
+	 * Combines the onsets of both timelines a word of 64 pulses at a time
+	 * and rebuilds a timeline from the bits that are left.
+	 */
+	private static Timeline combine(Timeline t1, Timeline t2, int pulses, LongBinaryOperator op)
+			throws IllegalArgumentException {
+		if (pulses < 0) {
+			throw new IllegalArgumentException("A grid needs a positive number of pulses.");
+		}
+		int words = (int) (((long) pulses + Long.SIZE - 1) >>> 6);
+		long[] onsets = new long[words];
+		long[] accents = new long[words];
+		long[] other = new long[words];
+		boolean accented = onsetBits(t1, pulses, onsets, accents);
+		accented |= onsetBits(t2, pulses, other, accents);
+		int k = 0;
+		for (int w = 0; w < words; w++) {
+			onsets[w] = op.applyAsLong(onsets[w], other[w]);
+			k += Long.bitCount(onsets[w]);
+		}
+		if (k == 0) {
+			return new ImmutableTimeline(null, 0, pulses);
+		}
+
+		int[] durations = new int[k];
+		boolean[] accent = accented ? new boolean[k] : null;
+		int i = 0;
+		int first = 0;
+		int previous = 0;
+		for (int w = 0; w < words; w++) {
+			for (long bits = onsets[w]; bits != 0; bits &= bits - 1) {
+				int p = (w << 6) + Long.numberOfTrailingZeros(bits);
+				if (i == 0) {
+					first = p;
+				} else {
+					durations[i - 1] = p - previous;
+				}
+				if (accented) {
+					accent[i] = (accents[w] & Long.lowestOneBit(bits)) != 0;
+				}
+				i++;
+				previous = p;
+			}
+		}
+		durations[k - 1] = first + pulses - previous;
+		return new ImmutableTimeline(OnsetTree.build(durations, accent, 0, k), first, pulses);
+	}
+
+	/**
+	 * Sets the bit of every onset of t stretched onto a grid of some number
+	 * of pulses, and the bit of every accent.
+	 * @return whether t has an accent
+	 */
+	private static boolean onsetBits(Timeline t, int pulses, long[] onsets, long[] accents)
+			throws IllegalArgumentException {
+		int n = t.getNumberOfPulses();
+		if (n == 0) {
+			return false;
+		}
+		if (pulses < n || pulses % n != 0) {
+			throw new IllegalArgumentException("A grid of " + pulses + " pulses can not hold a timeline of "
+					+ n + " pulses.");
+		}
+		int scale = pulses / n;
+		int[] positions = new int[t.getNumberOfOnsets()];
+		int k = t.copyOnsetPositions(positions);
+		boolean accented = false;
+		for (int i = 0; i < k; i++) {
+			int p = positions[i] * scale;
+			onsets[p >>> 6] |= 1L << p;
+			if (t.pulseAt(positions[i]) == Pulse.ACCENT) {
+				accents[p >>> 6] |= 1L << p;
+				accented = true;
+			}
+		}
+		return accented;
+	}
+
+	/**
+	 * The least common multiple of the numbers of pulses of both timelines,
+	 * ignoring a timeline without pulses.
+	 */
+	private static int commonGrid(Timeline t1, Timeline t2) throws IllegalArgumentException {
+		int a = t1.getNumberOfPulses();
+		int b = t2.getNumberOfPulses();
+		if (a == 0 || b == 0) {
+			return a + b;
+		}
+		long lcm = (long) a / gcd(a, b) * b;
+		if (lcm > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("The timelines have no common grid of at most "
+					+ Integer.MAX_VALUE + " pulses.");
+		}
+		return (int) lcm;
+	}
+
+	private static int gcd(int a, int b) {
+		while (b != 0) {
+			int r = a % b;
+			a = b;
+			b = r;
+		}
+		return a;
+	}
+
+	/**
+	 * Moves every onset of t1 some number of pulses to the right. Both kinds
+	 * of timeline only move onset 0: an ImmutableTimeline is rotated in O(1)
+	 * and a ResizeableTimeline is copied in O(k). Any other timeline is read
+	 * off its rotated pulses.
+	 * @param t1
+	 * @param amount
+	 * @return
+	 */
 	public static Timeline rotate(Timeline t1, int amount){
-		
-		Map<Integer, Onset> onsets = t1.getOnsets();
+		if(t1 instanceof ImmutableTimeline){
+			return ((ImmutableTimeline) t1).rotatedBy(amount);
+		}
+		if(t1 instanceof ResizeableTimeline){
+			return ((ResizeableTimeline) t1).rotatedBy(amount);
+		}
 		Necklace<Pulse> pulses = t1.getNecklace();
-		Timeline newT = new ResizeableTimeline(pulses, onsets);
-		
-		onsets.forEach((onsetnumber, onset) -> onsets.merge(onsetnumber, onset,
-				(key, val) -> {
-					// temporary rest
-				pulses.set(Pulse.REST, val.start(newT));
-				val.shift(1 * amount);
-				return val;
-			}));
-		
-		onsets.forEach((onsetnumber, onset) -> onsets.merge(onsetnumber, onset,
-				(key, val) -> {
-					// fill in attack in new location
-				pulses.set((val.isAccent() ? Pulse.ACCENT : Pulse.ATTACK),
-						val.start(newT));
-				return val;
-			}));
-
-		
-		return newT;
+		pulses.rotateBy(amount);
+		return new ResizeableTimeline(pulses);
 	}
 	
 }
@@ -0,0 +1,191 @@
+package core.distance;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import core.Timeline;
+
+/**
+ * The distances between every pair of rhythms in a corpus. Only the upper
+ * triangle is stored, row by row, in one flat float array. <br>
+ * The matrix is computed in square tiles of rhythms so that the onsets of
+ * both tiles stay in cache while their distances are taken, and the tiles
+ * are shared out over a ForkJoinPool.
+ *
+ * @author kr0
+ *
+ */
+public final class DistanceMatrix {
+
+	public static final int DEFAULT_TILE_SIZE = 64;
+
+	private final int size;
+	private final float[] values;
+
+	private DistanceMatrix(int size, float[] values) {
+		this.size = size;
+		this.values = values;
+	}
+
+	/**
+	 * Computes the distance matrix of corpus on the common pool.
+	 * @param corpus
+	 * @param distance
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public static DistanceMatrix compute(List<? extends Timeline> corpus, RhythmDistance distance)
+			throws IllegalArgumentException {
+		return compute(corpus, distance, ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Computes the distance matrix of corpus.
+	 * @param corpus
+	 * @param distance
+	 * @param pool
+	 * @param tileSize
+	 *            number of rhythms per tile side, must be >= 1
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the matrix does not fit in an array or the distance is
+	 *             not defined for some pair
+	 */
+	public static DistanceMatrix compute(List<? extends Timeline> corpus, RhythmDistance distance,
+			ForkJoinPool pool, int tileSize) throws IllegalArgumentException {
+		if (tileSize < 1) {
+			throw new IllegalArgumentException("Tile size must be >= 1.");
+		}
+		int m = corpus.size();
+		long cells = (long) m * (m - 1) / 2;
+		if (cells > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("A corpus of " + m + " rhythms has too many pairs for one matrix.");
+		}
+		OnsetPositions[] onsets = new OnsetPositions[m];
+		for (int i = 0; i < m; i++) {
+			onsets[i] = new OnsetPositions(corpus.get(i));
+		}
+		float[] values = new float[(int) cells];
+		tileSize = Math.min(tileSize, Math.max(m, 1));
+		int tiles = (m + tileSize - 1) / tileSize;
+		long pairs = (long) tiles * (tiles + 1) / 2;
+		if (pairs > 0) {
+			pool.invoke(new TileTask(onsets, distance, values, tileSize, tiles, 0, pairs));
+		}
+		return new DistanceMatrix(m, values);
+	}
+
+	/**
+	 * Number of rhythms.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The distance between rhythm i and rhythm j.
+	 * @param i
+	 * @param j
+	 * @return
+	 */
+	public float get(int i, int j) {
+		if (i < 0 || j < 0 || i >= size || j >= size) {
+			throw new IndexOutOfBoundsException("(" + i + ", " + j + ") of " + size);
+		}
+		if (i == j) {
+			return 0f;
+		}
+		return i < j ? values[index(i, j, size)] : values[index(j, i, size)];
+	}
+
+	/**
+	 * The backing array: row i holds the distances from rhythm i to rhythms
+	 * i + 1 to size() - 1. Changes write through to this matrix.
+	 * @return
+	 */
+	public float[] upperTriangle() {
+		return values;
+	}
+
+	static int index(int i, int j, int size) {
+		return (int) ((long) i * size - (long) i * (i + 1) / 2 + (j - i - 1));
+	}
+
+	/**
+	 * Computes tile pairs [from, to) of the tiles x tiles upper triangle,
+	 * numbered row by row.
+	 */
+	private static final class TileTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final OnsetPositions[] onsets;
+		private final RhythmDistance distance;
+		private final float[] values;
+		private final int tileSize;
+		private final int tiles;
+		private final long from;
+		private final long to;
+
+		TileTask(OnsetPositions[] onsets, RhythmDistance distance, float[] values,
+				int tileSize, int tiles, long from, long to) {
+			this.onsets = onsets;
+			this.distance = distance;
+			this.values = values;
+			this.tileSize = tileSize;
+			this.tiles = tiles;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				long mid = (from + to) >>> 1;
+				invokeAll(new TileTask(onsets, distance, values, tileSize, tiles, from, mid),
+						new TileTask(onsets, distance, values, tileSize, tiles, mid, to));
+				return;
+			}
+			int row = rowOf(from);
+			computeTile(row, row + (int) (from - rowStart(row)));
+		}
+
+		/**
+		 * Solves rowStart(row) <= pair < rowStart(row + 1).
+		 */
+		private int rowOf(long pair) {
+			double b = 2.0 * tiles + 1;
+			int row = (int) ((b - Math.sqrt(b * b - 8.0 * pair)) / 2);
+			row = Math.max(0, Math.min(row, tiles - 1));
+			while (row > 0 && rowStart(row) > pair) {
+				row--;
+			}
+			while (row + 1 < tiles && rowStart(row + 1) <= pair) {
+				row++;
+			}
+			return row;
+		}
+
+		private long rowStart(int row) {
+			return (long) row * tiles - (long) row * (row - 1) / 2;
+		}
+
+		private void computeTile(int rowTile, int columnTile) {
+			int m = onsets.length;
+			int rowEnd = Math.min(m, (rowTile + 1) * tileSize);
+			int columnStart = columnTile * tileSize;
+			int columnEnd = Math.min(m, columnStart + tileSize);
+			for (int i = rowTile * tileSize; i < rowEnd; i++) {
+				OnsetPositions a = onsets[i];
+				int j = Math.max(columnStart, i + 1);
+				int at = index(i, j, m);
+				for (; j < columnEnd; j++) {
+					values[at++] = (float) distance.distance(a, onsets[j]);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+package core.distance;
+
+import java.util.Arrays;
+
+import core.Timeline;
+
+/**
+ * A reusable buffer holding the pulse where each onset of a Timeline starts,
+ * in increasing order. Distances are computed on these so that comparing two
+ * rhythms does not allocate; load a new timeline into an existing instance
+ * instead of creating a new one.
+ *
+ * @author kr0
+ *
+ */
+public final class OnsetPositions {
+
+	private int[] positions;
+	private int onsets;
+	private int pulses;
+
+	public OnsetPositions() {
+		positions = new int[16];
+	}
+
+	public OnsetPositions(Timeline t) {
+		this();
+		load(t);
+	}
+
+	/**
+	 * Replaces the contents of this buffer with the onsets of t.
+	 * @param t
+	 * @return this
+	 */
+	public OnsetPositions load(Timeline t) {
+		int k = t.getNumberOfOnsets();
+		if (positions.length < k) {
+			positions = new int[Math.max(k, positions.length * 2)];
+		}
+		onsets = t.copyOnsetPositions(positions);
+		pulses = t.getNumberOfPulses();
+		return this;
+	}
+
+	/**
+	 * Replaces the contents of this buffer.
+	 * @param pulses
+	 * @param positions
+	 *            strictly increasing and each less than pulses
+	 * @return this
+	 * @throws IllegalArgumentException
+	 */
+	public OnsetPositions load(int pulses, int... positions) throws IllegalArgumentException {
+		for (int i = 0; i < positions.length; i++) {
+			if (positions[i] < 0 || positions[i] >= pulses
+					|| (i > 0 && positions[i] <= positions[i - 1])) {
+				throw new IllegalArgumentException("Onset positions must increase and lie in [0, " + pulses + ").");
+			}
+		}
+		if (this.positions.length < positions.length) {
+			this.positions = Arrays.copyOf(positions, positions.length);
+		} else {
+			System.arraycopy(positions, 0, this.positions, 0, positions.length);
+		}
+		this.onsets = positions.length;
+		this.pulses = pulses;
+		return this;
+	}
+
+	/**
+	 * Number of onsets.
+	 * @return
+	 */
+	public int onsets() {
+		return onsets;
+	}
+
+	/**
+	 * Number of pulses.
+	 * @return
+	 */
+	public int pulses() {
+		return pulses;
+	}
+
+	/**
+	 * The pulse where onset i starts.
+	 * @param i
+	 * @return
+	 */
+	public int position(int i) {
+		if (i < 0 || i >= onsets) {
+			throw new IndexOutOfBoundsException("Onset " + i + " of " + onsets);
+		}
+		return positions[i];
+	}
+
+	/**
+	 * The interval from onset i to the next one, wrapping from the last onset
+	 * to the first.
+	 */
+	int interval(int i) {
+		return (i + 1 < onsets ? positions[i + 1] : positions[0] + pulses) - positions[i];
+	}
+
+	int[] array() {
+		return positions;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(Arrays.copyOf(positions, onsets)) + "/" + pulses;
+	}
+
+}
@@ -0,0 +1,38 @@
+package core.distance;
+
+import core.Timeline;
+
+/**
+ * A measure of dissimilarity between two rhythms.
+ *
+ * @author kr0
+ *
+ */
+@FunctionalInterface
+public interface RhythmDistance {
+
+	/**
+	 * The distance between two rhythms given by their onset positions.
+	 * @param a
+	 * @param b
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the measure is not defined for this pair, e.g. the
+	 *             rhythms have a different number of pulses
+	 */
+	public double distance(OnsetPositions a, OnsetPositions b) throws IllegalArgumentException;
+
+	/**
+	 * The distance between two timelines. Onset positions are read into
+	 * per-thread buffers, so this does not allocate once the buffers are
+	 * large enough.
+	 * @param a
+	 * @param b
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public default double distance(Timeline a, Timeline b) throws IllegalArgumentException {
+		return RhythmDistances.distance(this, a, b);
+	}
+
+}
@@ -0,0 +1,299 @@
+package core.distance;
+
+import java.util.Arrays;
+
+import core.Timeline;
+
+/**
+ * A utility class of distance measures between rhythms from the Geometry of
+ * Rhythm. Every measure works on the sorted onset positions of two rhythms
+ * and, apart from the directed swap and rotational distances, runs in time
+ * linear in the number of onsets. None of them allocate.
+ *
+ * @author kr0
+ *
+ */
+public final class RhythmDistances {
+
+	public static final RhythmDistance HAMMING = RhythmDistances::hamming;
+	public static final RhythmDistance SWAP = RhythmDistances::swap;
+	public static final RhythmDistance DIRECTED_SWAP = RhythmDistances::directedSwap;
+	public static final RhythmDistance CHRONOTONIC = RhythmDistances::chronotonic;
+	public static final RhythmDistance INTERVAL_DIFFERENCE = RhythmDistances::intervalDifference;
+	public static final RhythmDistance ROTATIONAL_HAMMING = RhythmDistances::rotationalHamming;
+
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	private static final class Scratch {
+		final OnsetPositions a = new OnsetPositions();
+		final OnsetPositions b = new OnsetPositions();
+		int[] costs = new int[16];
+		int[] shifts = new int[64];
+	}
+
+	private RhythmDistances() {
+	}
+
+	/**
+	 * The number of pulses that are an onset in exactly one of the two
+	 * rhythms.
+	 * @param a
+	 * @param b
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the rhythms have a different number of pulses
+	 */
+	public static int hamming(OnsetPositions a, OnsetPositions b) throws IllegalArgumentException {
+		checkPulses(a, b);
+		int[] pa = a.array();
+		int[] pb = b.array();
+		int ka = a.onsets();
+		int kb = b.onsets();
+		int common = 0;
+		for (int i = 0, j = 0; i < ka && j < kb;) {
+			if (pa[i] < pb[j]) {
+				i++;
+			} else if (pa[i] > pb[j]) {
+				j++;
+			} else {
+				common++;
+				i++;
+				j++;
+			}
+		}
+		return ka + kb - 2 * common;
+	}
+
+	/**
+	 * The least number of swaps of adjacent pulses that turns one rhythm into
+	 * the other. The i-th onsets of both rhythms are matched, so this is the
+	 * sum of the distances between them.
+	 * @param a
+	 * @param b
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the rhythms have a different number of pulses or onsets
+	 */
+	public static int swap(OnsetPositions a, OnsetPositions b) throws IllegalArgumentException {
+		checkPulses(a, b);
+		checkOnsets(a, b);
+		int[] pa = a.array();
+		int[] pb = b.array();
+		int distance = 0;
+		for (int i = 0; i < a.onsets(); i++) {
+			distance += Math.abs(pa[i] - pb[i]);
+		}
+		return distance;
+	}
+
+	/**
+	 * The swap distance generalised to rhythms with a different number of
+	 * onsets: every onset of the denser rhythm moves onto an onset of the
+	 * other, and every onset of the other receives at least one. <br>
+	 * <b>Note -</b> the optimal assignment is monotone, so it is found with
+	 * a dynamic program over a band of width ka - kb + 1, which takes
+	 * O(kb (ka - kb + 1)) time.
+	 * @param a
+	 * @param b
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the rhythms have a different number of pulses or one of
+	 *             them has no onsets
+	 */
+	public static int directedSwap(OnsetPositions a, OnsetPositions b) throws IllegalArgumentException {
+		checkPulses(a, b);
+		if (a.onsets() < b.onsets()) {
+			OnsetPositions tmp = a;
+			a = b;
+			b = tmp;
+		}
+		int ka = a.onsets();
+		int kb = b.onsets();
+		if (kb == 0) {
+			throw new IllegalArgumentException("The directed swap distance needs at least one onset in each rhythm.");
+		}
+		int[] pa = a.array();
+		int[] pb = b.array();
+		int slack = ka - kb;
+
+		// costs[j] is the cheapest assignment of a[0..i] that sends a[i] to b[j]
+		Scratch scratch = SCRATCH.get();
+		if (scratch.costs.length < kb) {
+			scratch.costs = new int[Math.max(kb, scratch.costs.length * 2)];
+		}
+		int[] costs = scratch.costs;
+		costs[0] = Math.abs(pa[0] - pb[0]);
+		for (int i = 1; i < ka; i++) {
+			int high = Math.min(i, kb - 1);
+			int low = Math.max(0, i - slack);
+			for (int j = high; j >= low; j--) {
+				int stay = j <= i - 1 && j >= i - 1 - slack ? costs[j] : Integer.MAX_VALUE;
+				int advance = j > 0 && j - 1 >= i - 1 - slack ? costs[j - 1] : Integer.MAX_VALUE;
+				costs[j] = Math.abs(pa[i] - pb[j]) + Math.min(stay, advance);
+			}
+		}
+		return costs[kb - 1];
+	}
+
+	/**
+	 * The area between the chronotonic step functions of the two rhythms,
+	 * which map every pulse to the length of the inter-onset interval it
+	 * lies in.
+	 * @param a
+	 * @param b
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the rhythms have a different number of pulses or one of
+	 *             them has no onsets
+	 */
+	public static long chronotonic(OnsetPositions a, OnsetPositions b) throws IllegalArgumentException {
+		checkPulses(a, b);
+		int ka = a.onsets();
+		int kb = b.onsets();
+		if (ka == 0 || kb == 0) {
+			throw new IllegalArgumentException("The chronotonic distance needs at least one onset in each rhythm.");
+		}
+		int[] pa = a.array();
+		int[] pb = b.array();
+		int n = a.pulses();
+
+		// pulses before the first onset belong to the wrapped last interval
+		int valueA = a.interval(ka - 1);
+		int valueB = b.interval(kb - 1);
+		long area = 0;
+		int x = 0;
+		int i = 0;
+		int j = 0;
+		while (x < n) {
+			int nextA = i < ka ? pa[i] : n;
+			int nextB = j < kb ? pb[j] : n;
+			int next = Math.min(nextA, nextB);
+			area += (long) (next - x) * Math.abs(valueA - valueB);
+			x = next;
+			if (nextA == x && i < ka) {
+				valueA = a.interval(i++);
+			}
+			if (nextB == x && j < kb) {
+				valueB = b.interval(j++);
+			}
+		}
+		return area;
+	}
+
+	/**
+	 * Coyle and Shmulevich's interval difference: the sum over matching
+	 * inter-onset intervals of the larger divided by the smaller, minus the
+	 * number of intervals. Identical rhythms are 0 apart.
+	 * @param a
+	 * @param b
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the rhythms have a different number of onsets
+	 */
+	public static double intervalDifference(OnsetPositions a, OnsetPositions b) throws IllegalArgumentException {
+		checkOnsets(a, b);
+		int k = a.onsets();
+		double sum = 0;
+		for (int i = 0; i < k; i++) {
+			int ia = a.interval(i);
+			int ib = b.interval(i);
+			sum += ia > ib ? (double) ia / ib : (double) ib / ia;
+		}
+		return sum - k;
+	}
+
+	/**
+	 * The least Hamming distance between a and any rotation of b. Rotations
+	 * are isometries of the Hamming distance, so this is still a metric on
+	 * rhythms up to rotation. <br>
+	 * <b>Note -</b> rhythms of at most 64 pulses are compared as bit masks
+	 * in O(n); longer ones count the onset pairs at every shift in O(ka kb).
+	 * @param a
+	 * @param b
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the rhythms have a different number of pulses
+	 */
+	public static int rotationalHamming(OnsetPositions a, OnsetPositions b) throws IllegalArgumentException {
+		checkPulses(a, b);
+		int n = a.pulses();
+		int ka = a.onsets();
+		int kb = b.onsets();
+		if (ka == 0 || kb == 0) {
+			return ka + kb;
+		}
+		if (n <= Long.SIZE) {
+			return rotationalHamming(bits(a), bits(b), n);
+		}
+		Scratch scratch = SCRATCH.get();
+		if (scratch.shifts.length < n) {
+			scratch.shifts = new int[Math.max(n, scratch.shifts.length * 2)];
+		}
+		int[] shifts = scratch.shifts;
+		Arrays.fill(shifts, 0, n, 0);
+		int[] pa = a.array();
+		int[] pb = b.array();
+		int best = 0;
+		for (int i = 0; i < ka; i++) {
+			for (int j = 0; j < kb; j++) {
+				int shift = pa[i] - pb[j];
+				if (shift < 0) {
+					shift += n;
+				}
+				best = Math.max(best, ++shifts[shift]);
+			}
+		}
+		return ka + kb - 2 * best;
+	}
+
+	/**
+	 * The least Hamming distance between two rhythms of n <= 64 pulses given
+	 * as bit masks, pulse i in bit i.
+	 */
+	static int rotationalHamming(long a, long b, int n) {
+		long mask = n == Long.SIZE ? -1L : (1L << n) - 1;
+		int best = Long.bitCount(a ^ b);
+		for (int r = 1; r < n && best > 0; r++) {
+			long rotated = ((b << r) | (b >>> (n - r))) & mask;
+			best = Math.min(best, Long.bitCount(a ^ rotated));
+		}
+		return best;
+	}
+
+	/**
+	 * The onsets of a rhythm of at most 64 pulses as a bit mask.
+	 */
+	static long bits(OnsetPositions p) {
+		int[] positions = p.array();
+		long bits = 0;
+		for (int i = 0; i < p.onsets(); i++) {
+			bits |= 1L << positions[i];
+		}
+		return bits;
+	}
+
+	static double distance(RhythmDistance measure, Timeline a, Timeline b) {
+		Scratch scratch = SCRATCH.get();
+		return measure.distance(scratch.a.load(a), scratch.b.load(b));
+	}
+
+	private static void checkPulses(OnsetPositions a, OnsetPositions b) throws IllegalArgumentException {
+		if (a.pulses() != b.pulses()) {
+			throw new IllegalArgumentException("Rhythms must have the same number of pulses: "
+					+ a.pulses() + " != " + b.pulses());
+		}
+	}
+
+	private static void checkOnsets(OnsetPositions a, OnsetPositions b) throws IllegalArgumentException {
+		if (a.onsets() != b.onsets()) {
+			throw new IllegalArgumentException("Rhythms must have the same number of onsets: "
+					+ a.onsets() + " != " + b.onsets());
+		}
+	}
+
+}
@@ -0,0 +1,258 @@
+package core.distance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import core.Timeline;
+
+/**
+ * A nearest neighbour index over rhythms of a fixed number of pulses that
+ * ignores rotation. It is a BK-tree over the rotational Hamming distance
+ * (see RhythmDistances.rotationalHamming), which is a metric on rhythms up to
+ * rotation, so whole subtrees are pruned with the triangle inequality.
+ * Rhythms that are rotations of each other share one node keyed on their
+ * canonical rotation. <br>
+ * Queries may run concurrently with each other but not with add().
+ *
+ * @author kr0
+ *
+ */
+public final class RotationIndex {
+
+	private final int pulses;
+	private Node root;
+	private int size;
+
+	/**
+	 * A rhythm found by a query and its distance from the query.
+	 */
+	public static final class Neighbour {
+		private final Timeline timeline;
+		private final int distance;
+
+		Neighbour(Timeline timeline, int distance) {
+			this.timeline = timeline;
+			this.distance = distance;
+		}
+
+		public Timeline timeline() {
+			return timeline;
+		}
+
+		public int distance() {
+			return distance;
+		}
+
+		@Override
+		public String toString() {
+			return distance + ":" + timeline.getNecklace();
+		}
+	}
+
+	private static final class Node {
+		// canonical onsets, only kept when there are more than 64 pulses
+		final OnsetPositions key;
+		// onsets as a bit mask when there are at most 64 pulses
+		final long bits;
+		final List<Timeline> members = new ArrayList<>(1);
+		// children[d] is the subtree at distance d, null until needed
+		Node[] children;
+
+		Node(OnsetPositions key, long bits) {
+			this.key = key;
+			this.bits = bits;
+		}
+	}
+
+	/**
+	 * An empty index of rhythms with this number of pulses.
+	 * @param pulses
+	 * @throws IllegalArgumentException
+	 */
+	public RotationIndex(int pulses) throws IllegalArgumentException {
+		if (pulses < 1) {
+			throw new IllegalArgumentException("An index needs rhythms of at least one pulse.");
+		}
+		this.pulses = pulses;
+	}
+
+	/**
+	 * Builds an index of every rhythm in corpus.
+	 * @param pulses
+	 * @param corpus
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if some rhythm does not have this number of pulses
+	 */
+	public static RotationIndex build(int pulses, Iterable<? extends Timeline> corpus)
+			throws IllegalArgumentException {
+		RotationIndex index = new RotationIndex(pulses);
+		for (Timeline t : corpus) {
+			index.add(t);
+		}
+		return index;
+	}
+
+	/**
+	 * Number of rhythms in this index.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds a rhythm to this index.
+	 * @param t
+	 * @throws IllegalArgumentException
+	 *             if t does not have the number of pulses of this index
+	 */
+	public void add(Timeline t) throws IllegalArgumentException {
+		checkPulses(t);
+		OnsetPositions key = new OnsetPositions(t.canonicalRotation());
+		long bits = 0L;
+		if (pulses <= Long.SIZE) {
+			bits = RhythmDistances.bits(key);
+			key = null;
+		}
+		size++;
+		if (root == null) {
+			root = new Node(key, bits);
+			root.members.add(t);
+			return;
+		}
+		Node node = root;
+		while (true) {
+			int d = distance(node, key, bits);
+			if (d == 0) {
+				node.members.add(t);
+				return;
+			}
+			if (node.children == null) {
+				node.children = new Node[pulses + 1];
+			}
+			if (node.children[d] == null) {
+				Node child = new Node(key, bits);
+				child.members.add(t);
+				node.children[d] = child;
+				return;
+			}
+			node = node.children[d];
+		}
+	}
+
+	/**
+	 * The k rhythms closest to query under any rotation, nearest first. Ties
+	 * are broken arbitrarily.
+	 * @param query
+	 * @param k
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if query does not have the number of pulses of this index
+	 */
+	public List<Neighbour> nearest(Timeline query, int k) throws IllegalArgumentException {
+		checkPulses(query);
+		if (k <= 0 || root == null) {
+			return Collections.emptyList();
+		}
+		OnsetPositions key = new OnsetPositions(query);
+		long bits = pulses <= Long.SIZE ? RhythmDistances.bits(key) : 0L;
+
+		// farthest of the best k so far on top
+		PriorityQueue<Neighbour> best = new PriorityQueue<>(k + 1,
+				Comparator.comparingInt(Neighbour::distance).reversed());
+		Deque<Node> pending = new ArrayDeque<>();
+		pending.push(root);
+		while (!pending.isEmpty()) {
+			Node node = pending.pop();
+			int d = distance(node, key, bits);
+			for (Timeline member : node.members) {
+				if (best.size() < k) {
+					best.add(new Neighbour(member, d));
+				} else if (d < best.peek().distance()) {
+					best.poll();
+					best.add(new Neighbour(member, d));
+				} else {
+					break;
+				}
+			}
+			if (node.children == null) {
+				continue;
+			}
+			// a subtree at distance c from node only holds rhythms at least
+			// |c - d| from the query
+			int radius = best.size() < k ? pulses : best.peek().distance() - 1;
+			int from = Math.max(1, d - radius);
+			int to = Math.min(pulses, d + radius);
+			for (int c = from; c <= to; c++) {
+				if (node.children[c] != null) {
+					pending.push(node.children[c]);
+				}
+			}
+		}
+
+		List<Neighbour> result = new ArrayList<>(best);
+		result.sort(Comparator.comparingInt(Neighbour::distance));
+		return result;
+	}
+
+	/**
+	 * Every rhythm within radius of query under some rotation.
+	 * @param query
+	 * @param radius
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if query does not have the number of pulses of this index
+	 */
+	public List<Neighbour> within(Timeline query, int radius) throws IllegalArgumentException {
+		checkPulses(query);
+		List<Neighbour> result = new ArrayList<>();
+		if (root == null || radius < 0) {
+			return result;
+		}
+		OnsetPositions key = new OnsetPositions(query);
+		long bits = pulses <= Long.SIZE ? RhythmDistances.bits(key) : 0L;
+		Deque<Node> pending = new ArrayDeque<>();
+		pending.push(root);
+		while (!pending.isEmpty()) {
+			Node node = pending.pop();
+			int d = distance(node, key, bits);
+			if (d <= radius) {
+				for (Timeline member : node.members) {
+					result.add(new Neighbour(member, d));
+				}
+			}
+			if (node.children == null) {
+				continue;
+			}
+			int from = Math.max(1, d - radius);
+			int to = Math.min(pulses, d + radius);
+			for (int c = from; c <= to; c++) {
+				if (node.children[c] != null) {
+					pending.push(node.children[c]);
+				}
+			}
+		}
+		return result;
+	}
+
+	private int distance(Node node, OnsetPositions key, long bits) {
+		if (pulses <= Long.SIZE) {
+			return RhythmDistances.rotationalHamming(node.bits, bits, pulses);
+		}
+		return RhythmDistances.rotationalHamming(node.key, key);
+	}
+
+	private void checkPulses(Timeline t) throws IllegalArgumentException {
+		if (t.getNumberOfPulses() != pulses) {
+			throw new IllegalArgumentException("This index holds rhythms of " + pulses + " pulses, not "
+					+ t.getNumberOfPulses() + ".");
+		}
+	}
+
+}
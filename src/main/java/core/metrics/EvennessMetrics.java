@@ -0,0 +1,114 @@
+package core.metrics;
+
+import core.Timeline;
+
+/**
+ * Measures of how evenly the onsets of a rhythm are spread around its
+ * timeline, from the Geometry of Rhythm. Every measure of a rhythm is taken
+ * in one pass over its sorted onset positions, in O(k) time, with a single
+ * buffer reused across a batch.
+ *
+ * @author kr0
+ *
+ */
+public final class EvennessMetrics {
+
+	private EvennessMetrics() {
+	}
+
+	/**
+	 * Evaluates every evenness measure of every rhythm. A rhythm without
+	 * onsets measures 0 throughout.
+	 * @param timelines
+	 * @return a table with one row per rhythm, in order
+	 */
+	public static EvennessTable evaluate(Timeline... timelines) {
+		EvennessTable table = new EvennessTable(timelines.length);
+		int[] positions = new int[16];
+		for (int row = 0; row < timelines.length; row++) {
+			Timeline t = timelines[row];
+			if (positions.length < t.getNumberOfOnsets()) {
+				positions = new int[Math.max(t.getNumberOfOnsets(), positions.length * 2)];
+			}
+			int k = t.copyOnsetPositions(positions);
+			evaluate(positions, k, t.getNumberOfPulses(), table, row);
+		}
+		return table;
+	}
+
+	/**
+	 * Fills one row of table from the k sorted onset positions of a rhythm
+	 * of n pulses.
+	 */
+	static void evaluate(int[] p, int k, int n, EvennessTable table, int row) {
+		if (k == 0) {
+			return;
+		}
+		double step = (double) n / k;
+
+		// pairs closer going forward than back, as a window of later onsets
+		// (unwrapped past n) that slides along with i
+		long distances = 0;
+		long windowSum = 0;
+		int windowCount = 0;
+		int halfPairs = 0;
+		int r = 0;
+
+		// deviation from a regular polygon, by Welford's method
+		double deviationMean = 0;
+		double deviationSquares = 0;
+
+		double area = 0;
+		double perimeter = 0;
+		double intervalSquares = 0;
+		double variability = 0;
+		int previous = 0;
+
+		for (int i = 0; i < k; i++) {
+			if (i > 0 && r >= i) {
+				windowSum -= p[i];
+				windowCount--;
+			} else {
+				r = i;
+			}
+			while (r + 1 < i + k && 2 * (unwrapped(p, r + 1, k, n) - p[i]) < n) {
+				windowSum += unwrapped(p, ++r, k, n);
+				windowCount++;
+			}
+			distances += windowSum - (long) windowCount * p[i];
+			if (r + 1 < i + k && 2 * (unwrapped(p, r + 1, k, n) - p[i]) == n) {
+				halfPairs++;
+			}
+
+			double deviation = p[i] - i * step;
+			double delta = deviation - deviationMean;
+			deviationMean += delta / (i + 1);
+			deviationSquares += delta * (deviation - deviationMean);
+
+			int interval = (i + 1 < k ? p[i + 1] : p[0] + n) - p[i];
+			area += Math.sin(2 * Math.PI * interval / n);
+			perimeter += 2 * Math.sin(Math.PI * interval / n);
+			intervalSquares += (interval - step) * (interval - step);
+			if (i > 0) {
+				variability += Math.abs(previous - interval) / ((previous + interval) / 2.0);
+			}
+			previous = interval;
+		}
+
+		// each pair exactly half way round was seen from both ends
+		table.sumOfDistances[row] = distances + (long) (halfPairs / 2) * (n / 2);
+		table.regularDeviation[row] = Math.sqrt(deviationSquares / k);
+		table.polygonArea[row] = area / 2;
+		table.polygonPerimeter[row] = perimeter;
+		table.intervalDeviation[row] = Math.sqrt(intervalSquares / k);
+		table.npvi[row] = k < 2 ? 0 : 100 * variability / (k - 1);
+	}
+
+	/**
+	 * Position of onset j mod k, plus n once j wraps past the last onset.
+	 */
+	private static long unwrapped(int[] p, int j, int k, int n) {
+		return j < k ? p[j] : (long) p[j - k] + n;
+	}
+
+}
@@ -0,0 +1,91 @@
+package core.metrics;
+
+/**
+ * The evenness measures of a batch of rhythms, one array per measure. Row i
+ * holds the measures of the i-th rhythm given to EvennessMetrics.evaluate.
+ *
+ * @author kr0
+ *
+ */
+public final class EvennessTable {
+
+	final long[] sumOfDistances;
+	final double[] regularDeviation;
+	final double[] polygonArea;
+	final double[] polygonPerimeter;
+	final double[] intervalDeviation;
+	final double[] npvi;
+
+	EvennessTable(int size) {
+		sumOfDistances = new long[size];
+		regularDeviation = new double[size];
+		polygonArea = new double[size];
+		polygonPerimeter = new double[size];
+		intervalDeviation = new double[size];
+		npvi = new double[size];
+	}
+
+	/**
+	 * Number of rhythms in this table.
+	 * @return
+	 */
+	public int size() {
+		return npvi.length;
+	}
+
+	/**
+	 * Sum of the geodesic distances between every pair of onsets, in pulses.
+	 * @param i
+	 * @return
+	 */
+	public long sumOfDistances(int i) {
+		return sumOfDistances[i];
+	}
+
+	/**
+	 * Root mean square distance, in pulses, between the onsets and the
+	 * vertices of the closest regular polygon with as many vertices.
+	 * @param i
+	 * @return
+	 */
+	public double regularDeviation(int i) {
+		return regularDeviation[i];
+	}
+
+	/**
+	 * Area of the polygon of the onsets on a circle of radius 1.
+	 * @param i
+	 * @return
+	 */
+	public double polygonArea(int i) {
+		return polygonArea[i];
+	}
+
+	/**
+	 * Perimeter of the polygon of the onsets on a circle of radius 1.
+	 * @param i
+	 * @return
+	 */
+	public double polygonPerimeter(int i) {
+		return polygonPerimeter[i];
+	}
+
+	/**
+	 * Standard deviation of the inter-onset intervals.
+	 * @param i
+	 * @return
+	 */
+	public double intervalDeviation(int i) {
+		return intervalDeviation[i];
+	}
+
+	/**
+	 * Normalized pairwise variability index of the inter-onset intervals.
+	 * @param i
+	 * @return
+	 */
+	public double npvi(int i) {
+		return npvi[i];
+	}
+
+}
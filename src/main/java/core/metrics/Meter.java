@@ -0,0 +1,156 @@
+package core.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A metrical hierarchy: a bar divided into beats, each beat divided again
+ * and so on down to single pulses. Meter.of(4, 2, 2) is a bar of 4/4 on a
+ * grid of sixteenths. <br>
+ * A pulse is at level l when it starts a division of level l but none of
+ * a lower level; the start of a bar is at level 0 and the finest pulses are
+ * at level depth(). The level of every pulse of a rhythm is computed once
+ * for each length of rhythm scored against a meter and kept with it.
+ *
+ * @author kr0
+ *
+ */
+public final class Meter {
+
+	/**
+	 * 4/4 counted in sixteenths.
+	 */
+	public static final Meter COMMON_TIME = of(4, 2, 2);
+	/**
+	 * 12/8 counted in eighths.
+	 */
+	public static final Meter TWELVE_EIGHT = of(4, 3);
+
+	private final int[] subdivisions;
+	// units[l] is the number of pulses in a division of level l
+	private final int[] units;
+	private final ConcurrentMap<Integer, byte[]> levels = new ConcurrentHashMap<>();
+
+	private Meter(int[] subdivisions) {
+		this.subdivisions = subdivisions;
+		units = new int[subdivisions.length + 1];
+		units[subdivisions.length] = 1;
+		for (int l = subdivisions.length - 1; l >= 0; l--) {
+			units[l] = units[l + 1] * subdivisions[l];
+		}
+	}
+
+	/**
+	 * A meter dividing a bar into subdivisions[0] beats, each of them into
+	 * subdivisions[1] parts and so on.
+	 * @param subdivisions
+	 * @return
+	 * @throws IllegalArgumentException
+	 */
+	public static Meter of(int... subdivisions) throws IllegalArgumentException {
+		if (subdivisions.length == 0 || subdivisions.length > Byte.MAX_VALUE) {
+			throw new IllegalArgumentException("A meter needs between 1 and " + Byte.MAX_VALUE + " subdivisions.");
+		}
+		long pulses = 1;
+		for (int s : subdivisions) {
+			if (s < 1) {
+				throw new IllegalArgumentException("Every subdivision must be >= 1.");
+			}
+			pulses *= s;
+			if (pulses > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Too many pulses in a bar.");
+			}
+		}
+		return new Meter(subdivisions.clone());
+	}
+
+	public int getPulsesPerBar() {
+		return units[0];
+	}
+
+	public int getBeatsPerBar() {
+		return subdivisions[0];
+	}
+
+	public int getPulsesPerBeat() {
+		return units[1];
+	}
+
+	/**
+	 * The level of the finest pulses.
+	 * @return
+	 */
+	public int depth() {
+		return subdivisions.length;
+	}
+
+	/**
+	 * Number of pulses in a division of this level.
+	 */
+	int unit(int level) {
+		return units[level];
+	}
+
+	/**
+	 * The level of every pulse of a rhythm of n pulses.
+	 * @throws IllegalArgumentException
+	 *             if n is not a whole number of bars
+	 */
+	byte[] levels(int n) throws IllegalArgumentException {
+		byte[] cached = levels.get(n);
+		if (cached != null) {
+			return cached;
+		}
+		checkPulses(n);
+		byte[] computed = new byte[n];
+		for (int l = depth(); l > 0; l--) {
+			for (int p = 0; p < n; p += units[l]) {
+				computed[p] = (byte) l;
+			}
+		}
+		for (int p = 0; p < n; p += units[0]) {
+			computed[p] = 0;
+		}
+		cached = levels.putIfAbsent(n, computed);
+		return cached == null ? computed : cached;
+	}
+
+	/**
+	 * The lowest level of any pulse from a to b inclusive. Pulses may run
+	 * past the end of the rhythm and wrap around.
+	 */
+	int lowestLevel(int a, int b) {
+		for (int l = 0; l < depth(); l++) {
+			int unit = units[l];
+			long first = ((long) a + unit - 1) / unit * unit;
+			if (first <= b) {
+				return l;
+			}
+		}
+		return depth();
+	}
+
+	void checkPulses(int n) throws IllegalArgumentException {
+		if (n % units[0] != 0) {
+			throw new IllegalArgumentException("A rhythm of " + n + " pulses is not a whole number of bars of "
+					+ units[0] + " pulses.");
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof Meter && Arrays.equals(subdivisions, ((Meter) obj).subdivisions);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(subdivisions);
+	}
+
+	@Override
+	public String toString() {
+		return "Meter" + Arrays.toString(subdivisions);
+	}
+
+}
@@ -0,0 +1,193 @@
+package core.metrics;
+
+import core.Timeline;
+
+/**
+ * Measures of syncopation and metrical complexity of a rhythm, most of them
+ * against a Meter. Each one is a single loop over the sorted onset positions
+ * of the rhythm; the metrical level of every pulse is looked up in a table
+ * the meter keeps for rhythms of that length. <br>
+ * Onset positions are copied into a buffer kept per thread, so scoring does
+ * not allocate.
+ *
+ * @author kr0
+ *
+ */
+public final class Syncopation {
+
+	private static final ThreadLocal<int[][]> SCRATCH = new ThreadLocal<int[][]>() {
+		@Override
+		protected int[][] initialValue() {
+			return new int[][] { new int[64] };
+		}
+	};
+
+	private Syncopation() {
+	}
+
+	/**
+	 * Longuet-Higgins and Lee's measure: every onset followed by a rest on a
+	 * stronger pulse, before the next onset, is a syncopation worth the
+	 * difference in metrical level between the onset and the strongest such
+	 * rest.
+	 * @param t
+	 * @param meter
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if t is not a whole number of bars of meter
+	 */
+	public static int longuetHigginsLee(Timeline t, Meter meter) throws IllegalArgumentException {
+		int n = t.getNumberOfPulses();
+		byte[] levels = meter.levels(n);
+		int[] p = positions(t);
+		int k = t.getNumberOfOnsets();
+		int syncopation = 0;
+		for (int i = 0; i < k; i++) {
+			int next = i + 1 < k ? p[i + 1] : p[0] + n;
+			if (next - p[i] < 2) {
+				continue;
+			}
+			int rest = meter.lowestLevel(p[i] + 1, next - 1);
+			syncopation += Math.max(0, levels[p[i]] - rest);
+		}
+		return syncopation;
+	}
+
+	/**
+	 * Keith's measure. A note lasting d pulses is measured against the
+	 * largest power of two b <= d: it scores 2 when it does not start on a
+	 * multiple of b, 1 when it does not end on one, and 3 for both.
+	 * @param t
+	 * @return
+	 */
+	public static int keith(Timeline t) {
+		int n = t.getNumberOfPulses();
+		int[] p = positions(t);
+		int k = t.getNumberOfOnsets();
+		int syncopation = 0;
+		for (int i = 0; i < k; i++) {
+			// the last note ends on the first onset of the next cycle
+			int end = i + 1 < k ? p[i + 1] : p[0] + n;
+			int duration = end - p[i];
+			int beat = Integer.highestOneBit(duration) - 1;
+			if ((p[i] & beat) != 0) {
+				syncopation += 2;
+			}
+			if ((end & beat) != 0) {
+				syncopation += 1;
+			}
+		}
+		return syncopation;
+	}
+
+	/**
+	 * Toussaint's off-beatness: the number of onsets on pulses that no
+	 * regular polygon with fewer than n vertices, and a vertex on pulse 0,
+	 * reaches. These are the pulses coprime to n.
+	 * @param t
+	 * @return
+	 */
+	public static int offBeatness(Timeline t) {
+		int n = t.getNumberOfPulses();
+		int[] p = positions(t);
+		int k = t.getNumberOfOnsets();
+		int offBeats = 0;
+		for (int i = 0; i < k; i++) {
+			if (n > 1 && gcd(p[i], n) == 1) {
+				offBeats++;
+			}
+		}
+		return offBeats;
+	}
+
+	/**
+	 * Gomez et al.'s weighted note-to-beat distance. An onset a fraction T
+	 * of a beat away from the nearest beat scores 2 / T when its note ends
+	 * after the next beat but no later than the beat after that, and 1 / T
+	 * otherwise; onsets on a beat score 0. The result is the average over all
+	 * onsets.
+	 * @param t
+	 * @param meter
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if t is not a whole number of bars of meter
+	 */
+	public static double weightedNoteToBeatDistance(Timeline t, Meter meter) throws IllegalArgumentException {
+		int n = t.getNumberOfPulses();
+		meter.checkPulses(n);
+		int[] p = positions(t);
+		int k = t.getNumberOfOnsets();
+		if (k == 0) {
+			return 0;
+		}
+		int beat = meter.getPulsesPerBeat();
+		double sum = 0;
+		for (int i = 0; i < k; i++) {
+			int offset = p[i] % beat;
+			if (offset == 0) {
+				continue;
+			}
+			int end = i + 1 < k ? p[i + 1] : p[0] + n;
+			int nextBeat = p[i] - offset + beat;
+			double weight = end > nextBeat && end <= nextBeat + beat ? 2 : 1;
+			sum += weight * beat / Math.min(offset, beat - offset);
+		}
+		return sum / k;
+	}
+
+	/**
+	 * Toussaint's metrical complexity: how far the metrical weight of the
+	 * onsets falls short of the greatest weight any rhythm with as many
+	 * onsets could have. A pulse at level l weighs depth() + 1 - l, as in
+	 * Lerdahl and Jackendoff's metrical grid.
+	 * @param t
+	 * @param meter
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if t is not a whole number of bars of meter
+	 */
+	public static int metricalComplexity(Timeline t, Meter meter) throws IllegalArgumentException {
+		int n = t.getNumberOfPulses();
+		byte[] levels = meter.levels(n);
+		int[] p = positions(t);
+		int k = t.getNumberOfOnsets();
+		int top = meter.depth() + 1;
+		int simplicity = 0;
+		for (int i = 0; i < k; i++) {
+			simplicity += top - levels[p[i]];
+		}
+
+		// the strongest k pulses, taken a level at a time
+		int greatest = 0;
+		int remaining = k;
+		int above = 0;
+		for (int l = 0; l <= meter.depth() && remaining > 0; l++) {
+			int atOrAbove = n / meter.unit(l);
+			int taken = Math.min(remaining, atOrAbove - above);
+			greatest += taken * (top - l);
+			remaining -= taken;
+			above = atOrAbove;
+		}
+		return greatest - simplicity;
+	}
+
+	private static int[] positions(Timeline t) {
+		int[][] scratch = SCRATCH.get();
+		int k = t.getNumberOfOnsets();
+		if (scratch[0].length < k) {
+			scratch[0] = new int[Math.max(k, scratch[0].length * 2)];
+		}
+		t.copyOnsetPositions(scratch[0]);
+		return scratch[0];
+	}
+
+	private static int gcd(int a, int b) {
+		while (b != 0) {
+			int r = a % b;
+			a = b;
+			b = r;
+		}
+		return a;
+	}
+
+}
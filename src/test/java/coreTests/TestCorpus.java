@@ -0,0 +1,137 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import core.CorpusReader;
+import core.CorpusWriter;
+import core.Geometry;
+import core.ImmutableTimeline;
+import core.Necklaces;
+import core.ResizeableTimeline;
+import core.Timeline;
+import core.Timelines;
+
+public class TestCorpus {
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		List<Timeline> corpus = new ArrayList<>();
+		corpus.add(new ImmutableTimeline());
+		corpus.add(Timelines.euclidean(0, 12));
+		corpus.add(Timelines.euclidean(5, 16, 3));
+		corpus.add(Timelines.euclidean(31, 200, 150));
+		corpus.add(new ImmutableTimeline(3, 3, 4, 2, 4).insertOnset(5, 300, true));
+		corpus.add(new ResizeableTimeline(1, 2, 3));
+		corpus.addAll(Necklaces.necklaces(9, 4, true).collect(Collectors.toList()));
+		Random random = new Random(12);
+		for (int i = 0; i < 200; i++) {
+			corpus.add(Timelines.euclidean(random.nextInt(40), 40 + random.nextInt(40), random.nextInt(80)));
+		}
+
+		Path file = Files.createTempFile("corpus", ".gorc");
+		try {
+			try (CorpusWriter writer = new CorpusWriter(Files.newOutputStream(file))) {
+				for (Timeline t : corpus) {
+					writer.write(t);
+				}
+				assertTrue(writer.count() == corpus.size());
+			}
+			// small windows force records to straddle them
+			for (int window : new int[] { 1, 7, 1 << 20 }) {
+				try (CorpusReader reader = new CorpusReader(file, window)) {
+					Iterator<Timeline> it = reader.iterator();
+					for (Timeline expected : corpus) {
+						assertTrue(it.hasNext());
+						Timeline actual = it.next();
+						assertTrue(actual.getNumberOfPulses() == expected.getNumberOfPulses());
+						assertTrue(Geometry.boxNotation(actual).equals(Geometry.boxNotation(expected)));
+					}
+					assertFalse(it.hasNext());
+					assertTrue(reader.stream().count() == corpus.size());
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testBadMagic() throws Exception {
+		Path file = Files.createTempFile("corpus", ".txt");
+		try {
+			try (OutputStream out = Files.newOutputStream(file)) {
+				out.write("[x..x..x.]".getBytes("US-ASCII"));
+			}
+			new CorpusReader(file).close();
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testBadDurations() throws Exception {
+		// 8 pulses, 3 onsets from pulse 0, durations 3 3 3
+		readRecord(8, 3, 0, 0, 3, 3, 3);
+	}
+
+	@Test(expected = IOException.class)
+	public void testPulsePastTheEnd() throws Exception {
+		// 5 pulses, 2 onsets from pulse 0, bitset {0, 7}
+		readRecord(5, 2, 0, 1, 0x81);
+	}
+
+	@Test(expected = IOException.class)
+	public void testFirstPulseDisagrees() throws Exception {
+		// 5 pulses, 2 onsets from pulse 3, bitset {0, 2}
+		readRecord(5, 2, 3, 1, 0x05);
+	}
+
+	@Test(expected = IOException.class)
+	public void testNegativeFirstPulse() throws Exception {
+		// 5 pulses, 1 onset from pulse -1, duration 5
+		readRecord(5, 1, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F, 0, 5);
+	}
+
+	@Test(expected = IOException.class)
+	public void testNegativeNumberOfOnsets() throws Exception {
+		// 5 pulses, -1 onsets
+		readRecord(5, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F, 0, 0);
+	}
+
+	/**
+	 * Reads the first Timeline of a corpus holding the given record bytes.
+	 */
+	private static void readRecord(int... record) throws IOException {
+		Path file = Files.createTempFile("corpus", ".gorc");
+		try {
+			try (OutputStream out = Files.newOutputStream(file)) {
+				out.write("GORC".getBytes("US-ASCII"));
+				out.write(1);
+				for (int b : record) {
+					out.write(b);
+				}
+			}
+			try (CorpusReader reader = new CorpusReader(file)) {
+				reader.iterator().next();
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+}
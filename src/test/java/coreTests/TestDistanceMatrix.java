@@ -0,0 +1,46 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import core.Necklaces;
+import core.Timeline;
+import core.distance.DistanceMatrix;
+import core.distance.RhythmDistances;
+
+public class TestDistanceMatrix {
+
+	@Test
+	public void testMatchesPairwise() throws Exception {
+		List<Timeline> corpus = Necklaces.necklaces(12, 5).collect(Collectors.toList());
+		ForkJoinPool pool = new ForkJoinPool(3);
+		for (int tileSize : new int[] { 1, 5, 7, 64, 1000 }) {
+			DistanceMatrix matrix = DistanceMatrix.compute(corpus, RhythmDistances.SWAP, pool, tileSize);
+			assertTrue(matrix.size() == corpus.size());
+			assertTrue(matrix.upperTriangle().length == corpus.size() * (corpus.size() - 1) / 2);
+			for (int i = 0; i < corpus.size(); i++) {
+				assertTrue(matrix.get(i, i) == 0f);
+				for (int j = 0; j < corpus.size(); j++) {
+					float expected = (float) RhythmDistances.SWAP.distance(corpus.get(i), corpus.get(j));
+					assertTrue(matrix.get(i, j) == expected);
+				}
+			}
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testSmallCorpora() throws Exception {
+		List<Timeline> corpus = Necklaces.necklaces(8, 3).collect(Collectors.toList());
+		assertTrue(DistanceMatrix.compute(corpus.subList(0, 0), RhythmDistances.HAMMING).size() == 0);
+		assertTrue(DistanceMatrix.compute(corpus.subList(0, 1), RhythmDistances.HAMMING).upperTriangle().length == 0);
+		DistanceMatrix pair = DistanceMatrix.compute(corpus.subList(0, 2), RhythmDistances.HAMMING);
+		assertTrue(pair.get(1, 0) == pair.get(0, 1));
+	}
+
+}
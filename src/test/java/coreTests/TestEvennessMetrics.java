@@ -0,0 +1,95 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import core.Geometry;
+import core.ImmutableTimeline;
+import core.Timeline;
+import core.Timelines;
+import core.metrics.EvennessMetrics;
+import core.metrics.EvennessTable;
+
+public class TestEvennessMetrics {
+
+	private static final double DELTA = 1e-9;
+
+	@Test
+	public void testRegularRhythm() throws Exception {
+		EvennessTable table = EvennessMetrics.evaluate(Timelines.euclidean(4, 16));
+		assertTrue(table.size() == 1);
+		assertTrue(table.sumOfDistances(0) == 32);
+		assertEquals(0, table.regularDeviation(0), DELTA);
+		assertEquals(2, table.polygonArea(0), DELTA);
+		assertEquals(4 * Math.sqrt(2), table.polygonPerimeter(0), DELTA);
+		assertEquals(0, table.intervalDeviation(0), DELTA);
+		assertEquals(0, table.npvi(0), DELTA);
+	}
+
+	@Test
+	public void testSon() throws Exception {
+		Timeline son = new ImmutableTimeline(3, 3, 4, 2, 4);
+		EvennessTable table = EvennessMetrics.evaluate(son, new ImmutableTimeline(), Timelines.euclidean(1, 5));
+		assertTrue(table.sumOfDistances(0) == 48);
+		assertEquals(Math.sqrt(0.56), table.intervalDeviation(0), DELTA);
+		assertEquals(100 * (1 / 3.5 + 2 / 3.0 + 2 / 3.0) / 4, table.npvi(0), DELTA);
+		assertTrue(table.regularDeviation(0) > 0);
+
+		// no onsets, or a single one, measure nothing
+		for (int row = 1; row < 3; row++) {
+			assertTrue(table.sumOfDistances(row) == 0);
+			assertEquals(0, table.regularDeviation(row), DELTA);
+			assertEquals(0, table.polygonArea(row), DELTA);
+			assertEquals(0, table.polygonPerimeter(row), DELTA);
+			assertEquals(0, table.npvi(row), DELTA);
+		}
+	}
+
+	@Test
+	public void testAgainstIntervalVector() throws Exception {
+		Random random = new Random(19);
+		Timeline[] batch = new Timeline[200];
+		for (int b = 0; b < batch.length; b++) {
+			int n = 1 + random.nextInt(40);
+			StringBuilder box = new StringBuilder(n);
+			for (int i = 0; i < n; i++) {
+				box.append(random.nextInt(3) == 0 ? 'x' : '.');
+			}
+			batch[b] = Timelines.parseBoxNotation(box);
+		}
+		EvennessTable table = EvennessMetrics.evaluate(batch);
+		for (int b = 0; b < batch.length; b++) {
+			int[] vector = Geometry.intervalVector(batch[b]);
+			long expected = 0;
+			for (int d = 1; d < vector.length; d++) {
+				expected += (long) d * vector[d];
+			}
+			assertTrue(table.sumOfDistances(b) == expected);
+
+			// every measure ignores rotation
+			int shift = random.nextInt(batch[b].getNumberOfPulses());
+			EvennessTable rotated = EvennessMetrics.evaluate(Timelines.rotate(batch[b], shift));
+			assertTrue(rotated.sumOfDistances(0) == expected);
+			assertEquals(table.regularDeviation(b), rotated.regularDeviation(0), 1e-6);
+			assertEquals(table.polygonArea(b), rotated.polygonArea(0), 1e-6);
+			assertEquals(table.polygonPerimeter(b), rotated.polygonPerimeter(0), 1e-6);
+			assertEquals(table.intervalDeviation(b), rotated.intervalDeviation(0), 1e-6);
+		}
+	}
+
+	@Test
+	public void testMaximallyEvenIsMostEven() throws Exception {
+		EvennessTable table = EvennessMetrics.evaluate(Timelines.euclidean(5, 16),
+				new ImmutableTimeline(3, 3, 4, 2, 4), new ImmutableTimeline(1, 1, 1, 1, 12));
+		assertTrue(table.regularDeviation(0) < table.regularDeviation(1));
+		assertTrue(table.regularDeviation(1) < table.regularDeviation(2));
+		assertTrue(table.sumOfDistances(0) >= table.sumOfDistances(1));
+		assertTrue(table.sumOfDistances(1) > table.sumOfDistances(2));
+		assertTrue(table.polygonArea(0) > table.polygonArea(1));
+		assertTrue(table.polygonArea(1) > table.polygonArea(2));
+	}
+
+}
@@ -0,0 +1,171 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import core.Geometry;
+import core.ImmutableTimeline;
+import core.Necklace;
+import core.Onset;
+import core.Pulse;
+import core.ResizeableTimeline;
+import core.Timeline;
+import core.Timelines;
+
+public class TestGeometry {
+
+	@Test
+	public void testInterOnsetIntervals() throws Exception {
+		Timeline son = new ImmutableTimeline(3, 3, 4, 2, 4);
+		assertArrayEquals(new int[] { 3, 3, 4, 2, 4 }, Geometry.interOnsetIntervalArray(son));
+		assertArrayEquals(new int[] { 0, 1, -2, 2 }, Geometry.rhythmicContourArray(son));
+		assertTrue(Geometry.rhythmicContour(son).toString().equals("[0, 1, -2, 2]"));
+		assertTrue(Geometry.boxNotation(son).equals("[x..x..x...x.x...]"));
+
+		// a buffer larger than needed is fine
+		int[] buffer = new int[8];
+		assertTrue(Geometry.interOnsetIntervals(son, buffer) == 5);
+		assertTrue(buffer[4] == 4);
+		assertTrue(Geometry.rhythmicContour(son, buffer) == 4);
+		assertTrue(buffer[2] == -2);
+
+		Timeline empty = new ImmutableTimeline();
+		assertTrue(Geometry.interOnsetIntervalArray(empty).length == 0);
+		assertTrue(Geometry.rhythmicContourArray(empty).length == 0);
+	}
+
+	@Test
+	public void testWrappedOnsets() throws Exception {
+		// onset 0 starts on pulse 7, so onsets 1 and 2 wrap past pulse 0
+		Timeline tresillo = Timelines.euclidean(3, 8, 7);
+		int[] positions = new int[3];
+		assertTrue(tresillo.copyOnsetPositions(positions) == 3);
+		assertArrayEquals(new int[] { 2, 5, 7 }, positions);
+		assertArrayEquals(new int[] { 3, 2, 3 }, Geometry.interOnsetIntervalArray(tresillo));
+		assertTrue(Geometry.boxNotation(tresillo).equals(tresillo.getNecklace().toString()));
+		for (int i = 0; i < 3; i++) {
+			assertTrue(tresillo.pulseAt(positions[i]) != Pulse.REST);
+		}
+	}
+
+	@Test
+	public void testMatchesNecklace() throws Exception {
+		Random random = new Random(6);
+		for (int trial = 0; trial < 200; trial++) {
+			int k = 1 + random.nextInt(12);
+			int[] ioi = new int[k];
+			for (int i = 0; i < k; i++) {
+				ioi[i] = 1 + random.nextInt(5);
+			}
+			Timeline immutable = new ImmutableTimeline(ioi).insertOnset(random.nextInt(40), 1 + random.nextInt(3), random.nextBoolean());
+			Timeline resizeable = new ResizeableTimeline(ioi);
+			for (Timeline t : new Timeline[] { immutable, resizeable }) {
+				Necklace<Pulse> pulses = t.getNecklace();
+				int[] positions = new int[t.getNumberOfOnsets()];
+				int count = t.copyOnsetPositions(positions);
+				int expected = 0;
+				for (int i = 0; i < pulses.size(); i++) {
+					assertTrue(t.pulseAt(i) == pulses.get(i));
+					if (pulses.get(i) != Pulse.REST) {
+						assertTrue(positions[expected++] == i);
+					}
+				}
+				assertTrue(count == expected);
+				assertTrue(Geometry.boxNotation(t).equals(pulses.toString()));
+			}
+		}
+	}
+
+	@Test
+	public void testViews() throws Exception {
+		ResizeableTimeline t = new ResizeableTimeline(3, 3, 2);
+		List<Pulse> pulses = t.pulseView();
+		List<Onset> onsets = t.onsetView();
+		assertTrue(pulses.size() == 8 && onsets.size() == 3);
+		assertTrue(pulses.get(3) == Pulse.ATTACK && pulses.get(4) == Pulse.REST);
+		assertTrue(onsets.get(2).duration() == 2);
+		assertTrue(t.wrapPulseIndex(-1) == 7);
+
+		// views read through to the timeline
+		t.addOnset(4);
+		assertTrue(pulses.size() == 12 && onsets.size() == 4);
+
+		Timeline immutable = new ImmutableTimeline(3, 3, 2);
+		assertTrue(immutable.pulseView().equals(Lists.newArrayList(immutable.getNecklace())));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testViewIsReadOnly() throws Exception {
+		new ImmutableTimeline(3, 3, 2).pulseView().set(0, Pulse.REST);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testViewDoesNotWrap() throws Exception {
+		new ImmutableTimeline(3, 3, 2).onsetView().get(3);
+	}
+
+	@Test
+	public void testIntervalVector() throws Exception {
+		Timeline son = new ImmutableTimeline(3, 3, 4, 2, 4);
+		assertArrayEquals(new int[] { 0, 0, 1, 2, 2, 0, 3, 2, 0 }, Geometry.intervalVector(son));
+		assertArrayEquals(new int[] { 0, 0, 0, 0, 0 }, Geometry.intervalVector(Timelines.euclidean(1, 8)));
+		assertArrayEquals(new int[] { 0, 0, 1 }, Geometry.intervalVector(Timelines.euclidean(2, 4)));
+
+		// long dense timelines go through the FFT and must count exactly alike
+		Random random = new Random(17);
+		for (int n : new int[] { 4000, 4001 }) {
+			StringBuilder box = new StringBuilder(n);
+			for (int i = 0; i < n; i++) {
+				box.append(random.nextBoolean() ? 'x' : '.');
+			}
+			Timeline t = Timelines.parseBoxNotation(box);
+			int[] positions = new int[t.getNumberOfOnsets()];
+			int k = t.copyOnsetPositions(positions);
+			int[] expected = new int[n / 2 + 1];
+			for (int i = 0; i < k; i++) {
+				for (int j = i + 1; j < k; j++) {
+					int d = positions[j] - positions[i];
+					expected[Math.min(d, n - d)]++;
+				}
+			}
+			assertArrayEquals(expected, Geometry.intervalVector(t));
+		}
+	}
+
+	@Test
+	public void testDeepRhythms() throws Exception {
+		// the diatonic scale is deep in every sense
+		Timeline diatonic = Timelines.euclidean(7, 12);
+		assertArrayEquals(new int[] { 0, 2, 5, 4, 3, 6, 1 }, Geometry.intervalVector(diatonic));
+		assertTrue(Geometry.isDeep(diatonic));
+		assertTrue(Geometry.isErdosDeep(diatonic));
+		assertTrue(Geometry.isWinogradDeep(diatonic));
+
+		// the tresillo never has distances 1 or 4
+		Timeline tresillo = Timelines.euclidean(3, 8);
+		assertTrue(Geometry.isDeep(tresillo));
+		assertTrue(Geometry.isErdosDeep(tresillo));
+		assertFalse(Geometry.isWinogradDeep(tresillo));
+
+		// the son has distances 3, 4 and 7 twice each
+		Timeline son = new ResizeableTimeline(3, 3, 4, 2, 4);
+		assertFalse(Geometry.isDeep(son));
+		assertFalse(Geometry.isErdosDeep(son));
+		assertFalse(Geometry.isWinogradDeep(son));
+
+		// every rotation shares the cached vector, which callers can not change
+		int[] vector = Geometry.intervalVector(diatonic);
+		vector[1] = 100;
+		Timeline rotated = Timelines.rotate(diatonic, 5);
+		assertArrayEquals(new int[] { 0, 2, 5, 4, 3, 6, 1 }, Geometry.intervalVector(rotated));
+		assertTrue(Geometry.isErdosDeep(rotated));
+		assertFalse(Geometry.isErdosDeep(new ImmutableTimeline()));
+	}
+
+}
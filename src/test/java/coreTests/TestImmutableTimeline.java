@@ -0,0 +1,216 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Random;
+
+import org.junit.Test;
+
+import core.Geometry;
+import core.ImmutableTimeline;
+import core.Onset;
+import core.Pulse;
+import core.ResizeableTimeline;
+import core.Timeline;
+import core.Timelines;
+
+public class TestImmutableTimeline {
+
+	private static String box(Timeline t) {
+		return t.getNecklace().toString();
+	}
+
+	@Test
+	public void testConstruction() throws Exception {
+		ImmutableTimeline t = new ImmutableTimeline(3, 3, 2);
+		assertTrue(box(t).equals("[x..x..x.]"));
+		assertTrue(Geometry.interOnsetIntervalString(t).equals("[3-3-2]"));
+		assertTrue(t.getNumberOfOnsets() == 3);
+		assertTrue(t.getNumberOfPulses() == 8);
+	}
+
+	@Test
+	public void testAddOnset() throws Exception {
+		ImmutableTimeline empty = new ImmutableTimeline();
+		ImmutableTimeline t = (ImmutableTimeline) empty.addOnset(3);
+		t = (ImmutableTimeline) t.addOnset(3);
+		t = (ImmutableTimeline) t.addOnset(2, true);
+		assertTrue(box(t).equals("[x..x..X.]"));
+		assertTrue(empty.getNumberOfOnsets() == 0);
+		assertTrue(empty.getNumberOfPulses() == 0);
+	}
+
+	@Test
+	public void testEditsLeaveOriginalUntouched() throws Exception {
+		ImmutableTimeline t = new ImmutableTimeline(3, 3, 2);
+		Timeline removed = t.removeOnset(1);
+		Timeline replaced = t.replaceOnset(0, 5, true);
+		Timeline inserted = t.insertOnset(1, 1, false);
+		assertTrue(box(removed).equals("[x.....x.]"));
+		assertTrue(box(replaced).equals("[X....x..x.]"));
+		assertTrue(box(inserted).equals("[xx..x..x.]"));
+		assertTrue(Geometry.interOnsetIntervalString(inserted).equals("[1-3-3-2]"));
+		assertTrue(box(t).equals("[x..x..x.]"));
+	}
+
+	@Test
+	public void testRemoveOnset() throws Exception {
+		ImmutableTimeline t = new ImmutableTimeline(3, 3, 2);
+
+		// Remove onsets from right to left
+		Timeline tmp = t.removeOnset(2);
+		assertTrue(Geometry.interOnsetIntervalString(tmp).equals("[3-5]"));
+		assertTrue(box(tmp).equals("[x..x....]"));
+		tmp = ((ImmutableTimeline) tmp).removeOnset(1);
+		assertTrue(Geometry.interOnsetIntervalString(tmp).equals("[8]"));
+		assertTrue(box(tmp).equals("[x.......]"));
+		tmp = ((ImmutableTimeline) tmp).removeOnset(0);
+		assertTrue(Geometry.interOnsetIntervalString(tmp).equals("[]"));
+		assertTrue(box(tmp).equals("[........]"));
+		assertTrue(tmp.getNumberOfOnsets() == 0);
+
+		// Remove onsets from left to right
+		tmp = t.removeOnset(0);
+		assertTrue(Geometry.interOnsetIntervalString(tmp).equals("[3-5]"));
+		assertTrue(box(tmp).equals("[...x..x.]"));
+		tmp = ((ImmutableTimeline) tmp).removeOnset(0);
+		assertTrue(Geometry.interOnsetIntervalString(tmp).equals("[8]"));
+		assertTrue(box(tmp).equals("[......x.]"));
+		tmp = ((ImmutableTimeline) tmp).removeOnset(0);
+		assertTrue(box(tmp).equals("[........]"));
+	}
+
+	@Test
+	public void testOnsetNumbers() throws Exception {
+		Timeline t = new ImmutableTimeline(3, 3, 2).removeOnset(0);
+		for (int i = 0; i < t.getNumberOfOnsets(); i++) {
+			Onset o = t.getOnset(i);
+			assertTrue(t.getOnsetNumber(o) == i);
+		}
+		assertTrue(t.getOnset(0).start() == 3);
+		assertTrue(t.getOnset(1).duration() == 5);
+	}
+
+	@Test
+	public void testLongTimeline() throws Exception {
+		ImmutableTimeline t = new ImmutableTimeline();
+		for (int i = 0; i < 5000; i++) {
+			t = (ImmutableTimeline) t.addOnset(1 + (i % 3));
+		}
+		assertTrue(t.getNumberOfOnsets() == 5000);
+		assertTrue(t.getOnset(4999).duration() == 1 + (4999 % 3));
+		assertTrue(t.getOnset(2500).start() == 2500 / 3 * 6 + 1);
+	}
+
+	@Test
+	public void testRotationEquivalence() throws Exception {
+		ImmutableTimeline son = new ImmutableTimeline(3, 3, 4, 2, 4);
+		assertTrue(son.equalsUnderRotation(son.canonicalRotation()));
+		assertTrue(box(son.canonicalRotation()).equals("[...x..x..x...x.x]"));
+
+		Set<Object> classes = new HashSet<>();
+		classes.add(Timelines.underRotation().wrap(son));
+		classes.add(Timelines.underRotation().wrap(new ImmutableTimeline(2, 4, 3, 3, 4)));
+		classes.add(Timelines.underRotation().wrap(new ResizeableTimeline(4, 3, 3, 4, 2)));
+		assertTrue(classes.size() == 1);
+		classes.add(Timelines.underRotation().wrap(new ImmutableTimeline(3, 3, 4, 4, 2)));
+		assertTrue(classes.size() == 2);
+	}
+
+	/**
+	 * Applies random edits to an ImmutableTimeline and to a plain list of
+	 * pulses, and checks that they agree.
+	 */
+	@Test
+	public void testMatchesPulseEdits() throws Exception {
+		Random random = new Random(8);
+		ImmutableTimeline t = new ImmutableTimeline(3, 3, 2);
+		List<Pulse> pulses = toList(t);
+		for (int step = 0; step < 3000; step++) {
+			int n = pulses.size();
+			int k = t.getNumberOfOnsets();
+			int duration = 1 + random.nextInt(4);
+			boolean accent = random.nextBoolean();
+			int op = random.nextInt(3);
+			if (op == 0 || k < 2 || n > 60) {
+				if (n > 60) {
+					t = new ImmutableTimeline(2, 1);
+					pulses = toList(t);
+					continue;
+				}
+				int pulse = random.nextInt(n + 1);
+				t = (ImmutableTimeline) t.insertOnset(pulse, duration, accent);
+				pulses.add(pulse, accent ? Pulse.ACCENT : Pulse.ATTACK);
+				for (int j = 1; j < duration; j++) {
+					pulses.add(pulse + 1, Pulse.REST);
+				}
+			} else if (op == 1) {
+				int i = random.nextInt(k);
+				pulses.set(t.getOnset(i).start(), Pulse.REST);
+				t = (ImmutableTimeline) t.removeOnset(i);
+			} else {
+				int i = random.nextInt(k);
+				Onset o = t.getOnset(i);
+				int s = o.start();
+				int d0 = o.duration();
+				if (duration > d0) {
+					int after = (s + d0 - 1) % n + 1;
+					for (int j = d0; j < duration; j++) {
+						pulses.add(after, Pulse.REST);
+					}
+					if (after <= s) {
+						s += duration - d0;
+					}
+				} else if (duration < d0) {
+					boolean[] drop = new boolean[n];
+					for (int j = duration; j < d0; j++) {
+						drop[(s + j) % n] = true;
+					}
+					List<Pulse> kept = new ArrayList<>();
+					int newStart = s;
+					for (int j = 0; j < n; j++) {
+						if (!drop[j]) {
+							kept.add(pulses.get(j));
+						} else if (j < s) {
+							newStart--;
+						}
+					}
+					pulses = kept;
+					s = newStart;
+				}
+				pulses.set(s, accent ? Pulse.ACCENT : Pulse.ATTACK);
+				t = (ImmutableTimeline) t.replaceOnset(i, duration, accent);
+			}
+			assertTrue(t.getNumberOfPulses() == pulses.size());
+			assertTrue(box(t).equals(pulses.toString().replaceAll("[, ]", "")));
+		}
+	}
+
+	@Test
+	public void testOnsetAt() throws Exception {
+		Timeline t = Timelines.rotate(new ImmutableTimeline(3, 3, 2), 2);
+		assertTrue(box(t).equals("[x.x..x..]"));
+		int[] expected = { 2, 2, 0, 0, 0, 1, 1, 1 };
+		for (int p = 0; p < 8; p++) {
+			assertTrue(t.onsetAt(p) == expected[p]);
+			assertTrue(t.onsetAt(p + 8) == expected[p]);
+		}
+		assertTrue(t.onsetStart(0) == 2);
+		assertTrue(t.onsetStart(2) == 0);
+		assertTrue(t.onsetStart(-1) == 0);
+		assertTrue(new ImmutableTimeline(4).removeOnset(0).onsetAt(3) == -1);
+	}
+
+	private static List<Pulse> toList(Timeline t) {
+		List<Pulse> pulses = new ArrayList<>();
+		for (Pulse p : t.getNecklace()) {
+			pulses.add(p);
+		}
+		return pulses;
+	}
+
+}
@@ -2,12 +2,14 @@ package coreTests;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import org.junit.Test;
 
 import core.Necklace;
 import core.Pulse;
+import core.PulseNecklace;
 
 public class TestNecklace {
 
@@ -235,6 +237,27 @@ public class TestNecklace {
 		assertTrue(t.toString().equals("[x...x..x...xx...x]"));
 
 	}
+
+	@Test
+	public void testRangeInsertAndRemove() throws Exception {
+		Necklace<Pulse> t = new Necklace<Pulse>();
+		t.add(Pulse.ATTACK, 0, 3);
+		assertTrue(t.toString().equals("[xxx]"));
+		t.add(Pulse.REST, 1, 2);
+		assertTrue(t.toString().equals("[x..xx]"));
+		t.add(Pulse.REST, t.size(), 2);
+		assertTrue(t.toString().equals("[x..xx..]"));
+		t.add(Pulse.ACCENT, -1, 1);
+		assertTrue(t.toString().equals("[x..xx.X.]"));
+
+		t.removeRange(1, 2);
+		assertTrue(t.toString().equals("[xxx.X.]"));
+		// wraps round the end
+		t.removeRange(-1, 0);
+		assertTrue(t.toString().equals("[xx.X]"));
+		t.shrink(3, 1);
+		assertTrue(t.toString().equals("[.]"));
+	}
 	
 	@Test
 	public void testCyclicIterator() throws Exception {
@@ -292,4 +315,90 @@ public class TestNecklace {
 
 	
 	
+	@Test
+	public void testEqualsAndHashCode() throws Exception {
+		Necklace<Pulse> t = new Necklace<Pulse>();
+		PulseNecklace packed = new PulseNecklace();
+		for (int i = 0; i < 37; i++) {
+			Pulse p = (i % 5 == 0) ? Pulse.ACCENT : (i % 2 == 0) ? Pulse.ATTACK : Pulse.REST;
+			t.add(p);
+			packed.add(p);
+		}
+		assertTrue(t.equals(packed));
+		assertTrue(packed.equals(t));
+		assertTrue(t.hashCode() == packed.hashCode());
+		t.set(Pulse.REST, 2);
+		assertFalse(t.equals(packed));
+	}
+
+	@Test
+	public void testCanonicalRotation() throws Exception {
+		Necklace<Pulse> t = new Necklace<Pulse>();
+		t.add(Pulse.ATTACK);
+		t.add(Pulse.REST);
+		t.add(Pulse.REST);
+		t.add(Pulse.ATTACK);
+		t.add(Pulse.REST);
+		t.add(Pulse.REST);
+		t.add(Pulse.ATTACK);
+		t.add(Pulse.REST);
+		assertTrue(t.leastRotation() == 1);
+		assertTrue(t.canonicalRotation().toString().equals("[..x..x.x]"));
+
+		// every rotation has the same canonical form and rotation hash
+		PulseNecklace packed = new PulseNecklace(t);
+		for (int i = 0; i < t.size(); i++) {
+			Necklace<Pulse> rotated = new Necklace<Pulse>(t);
+			rotated.rotateBy(i);
+			assertTrue(rotated.canonicalRotation().equals(t.canonicalRotation()));
+			assertTrue(rotated.rotationHashCode() == t.rotationHashCode());
+			assertTrue(rotated.equalsUnderRotation(t));
+			assertTrue(packed.equalsUnderRotation(rotated));
+			assertTrue(packed.rotationHashCode() == rotated.rotationHashCode());
+		}
+
+		// cached value follows modifications
+		t.set(Pulse.ACCENT, 0);
+		assertTrue(t.canonicalRotation().toString().equals("[..x..x.X]"));
+		assertFalse(t.equalsUnderRotation(packed));
+
+		// periodic necklaces
+		Necklace<Pulse> periodic = new Necklace<Pulse>();
+		for (int i = 0; i < 12; i++) {
+			periodic.add(i % 3 == 2 ? Pulse.ATTACK : Pulse.REST);
+		}
+		assertTrue(periodic.canonicalRotation().toString().equals("[..x..x..x..x]"));
+	}
+
+	@Test
+	public void testRotatedCopiesAreIndependent() throws Exception {
+		for (Necklace<Pulse> t : Arrays.<Necklace<Pulse>>asList(new Necklace<Pulse>(), new PulseNecklace())) {
+			t.add(Pulse.ATTACK);
+			t.add(Pulse.REST);
+			t.add(Pulse.ACCENT);
+			t.add(Pulse.REST);
+			t.add(Pulse.REST);
+			Necklace<Pulse> rotated = t.rotated(2);
+			assertTrue(rotated.toString().equals("[..x.X]"));
+			assertTrue(t.toString().equals("[x.X..]"));
+
+			// writes to either copy leave the other alone
+			rotated.set(Pulse.ATTACK, 0);
+			assertTrue(rotated.toString().equals("[x.x.X]"));
+			assertTrue(t.toString().equals("[x.X..]"));
+			t.add(Pulse.ATTACK, 1);
+			assertTrue(t.toString().equals("[xx.X..]"));
+			assertTrue(rotated.toString().equals("[x.x.X]"));
+
+			// size changing edits apply the pending rotation
+			rotated.remove(0);
+			rotated.add(Pulse.REST);
+			assertTrue(rotated.toString().equals("[.x.X.]"));
+			assertTrue(rotated.equals(new PulseNecklace(rotated)));
+			Necklace<Pulse> back = t.rotated(3);
+			assertTrue(back.toString().equals("[X..xx.]"));
+			assertTrue(back.hashCode() == new Necklace<Pulse>(back).hashCode());
+		}
+	}
+
 }
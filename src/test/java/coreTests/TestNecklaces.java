@@ -0,0 +1,122 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import core.Necklace;
+import core.Necklaces;
+import core.Pulse;
+import core.PulseNecklace;
+import core.Timeline;
+
+public class TestNecklaces {
+
+	@Test
+	public void testBinaryCounts() throws Exception {
+		assertTrue(Necklaces.necklaces(8, 3).count() == 7);
+		assertTrue(Necklaces.necklaces(16, 4).count() == 116);
+		assertTrue(Necklaces.necklaces(12, 0).count() == 1);
+		assertTrue(Necklaces.necklaces(12, 12).count() == 1);
+		assertTrue(Necklaces.bracelets(8, 3).count() == 5);
+	}
+
+	@Test
+	public void testTresillo() throws Exception {
+		List<String> boxes = Necklaces.necklaces(8, 3)
+				.map(t -> t.getNecklace().toString())
+				.collect(Collectors.toList());
+		assertTrue(boxes.contains("[..x..x.x]"));
+		assertTrue(boxes.size() == new HashSet<>(boxes).size());
+	}
+
+	@Test
+	public void testCanonicalForm() throws Exception {
+		Necklaces.necklaces(10, 4, true).forEach(t -> {
+			assertTrue(t.getNumberOfPulses() == 10);
+			assertTrue(t.getNumberOfOnsets() == 4);
+			assertTrue(t.getNecklace().leastRotation() == 0);
+		});
+	}
+
+	@Test
+	public void testMatchesBruteForce() throws Exception {
+		for (int n = 1; n <= 9; n++) {
+			for (int k = 0; k <= n; k++) {
+				for (boolean accents : new boolean[] { false, true }) {
+					Set<String> necklaces = new HashSet<>();
+					Set<String> bracelets = new HashSet<>();
+					bruteForce(n, k, accents, necklaces, bracelets);
+					assertTrue(Necklaces.necklaces(n, k, accents).count() == necklaces.size());
+					assertTrue(Necklaces.bracelets(n, k, accents).count() == bracelets.size());
+					Set<String> generated = Necklaces.necklaces(n, k, accents)
+							.map(t -> t.getNecklace().toString())
+							.collect(Collectors.toSet());
+					assertTrue(generated.equals(necklaces));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testParallel() throws Exception {
+		long sequential = Necklaces.necklaces(24, 8).count();
+		long parallel = Necklaces.necklaces(24, 8).parallel().count();
+		assertTrue(sequential == 30667);
+		assertTrue(parallel == sequential);
+
+		Set<String> split = Necklaces.bracelets(18, 6, true).parallel()
+				.map(Timeline::getNecklace)
+				.map(Necklace::toString)
+				.collect(Collectors.toSet());
+		assertTrue(split.size() == Necklaces.bracelets(18, 6, true).count());
+	}
+
+	private static void bruteForce(int n, int k, boolean accents,
+			Set<String> necklaces, Set<String> bracelets) {
+		int base = accents ? 3 : 2;
+		int total = (int) Math.pow(base, n);
+		for (int word = 0; word < total; word++) {
+			PulseNecklace pulses = new PulseNecklace();
+			int onsets = 0;
+			for (int i = 0, w = word; i < n; i++, w /= base) {
+				int digit = w % base;
+				Pulse p = digit == 0 ? Pulse.REST
+						: (accents && digit == 1) ? Pulse.ACCENT : Pulse.ATTACK;
+				onsets += digit == 0 ? 0 : 1;
+				pulses.add(p);
+			}
+			if (onsets != k) {
+				continue;
+			}
+			Necklace<Pulse> canonical = pulses.canonicalRotation();
+			Necklace<Pulse> mirror = new PulseNecklace();
+			for (int i = n - 1; i >= 0; i--) {
+				mirror.add(pulses.get(i));
+			}
+			Necklace<Pulse> mirrorCanonical = mirror.canonicalRotation();
+			necklaces.add(canonical.toString());
+			String a = canonical.toString();
+			String b = mirrorCanonical.toString();
+			bracelets.add(order(a) <= order(b) ? a : b);
+		}
+	}
+
+	private static long order(String box) {
+		// compare box strings in pulse order: REST < ACCENT < ATTACK
+		long key = 0;
+		for (char c : box.toCharArray()) {
+			int code = c == '.' ? 0 : c == 'X' ? 1 : c == 'x' ? 2 : -1;
+			if (code >= 0) {
+				key = key * 3 + code;
+			}
+		}
+		return key;
+	}
+
+}
@@ -0,0 +1,48 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import core.ImmutableTimeline;
+import core.Onset;
+import core.Timeline;
+
+public class TestOnset {
+
+	@Test
+	public void testAccessors() throws Exception {
+		Onset o = new Onset(-3, 4, 7, true);
+		assertTrue(o.start() == -3);
+		assertTrue(o.end() == 0);
+		assertTrue(o.duration() == 4);
+		assertTrue(o.id() == 7);
+		assertTrue(o.isAccent());
+		assertTrue(o.range().lowerEndpoint() == -3);
+
+		o.shift(5);
+		assertTrue(o.start() == 2 && o.end() == 5 && o.isAccent());
+		o.extend(2);
+		assertTrue(o.duration() == 6);
+		o.setRange(1, 1);
+		assertTrue(o.start() == 1 && o.duration() == 1 && o.isAccent());
+		assertFalse(new Onset(0, Integer.MAX_VALUE, 0).isAccent());
+		assertTrue(new Onset(0, Integer.MAX_VALUE, 0).duration() == Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void testContext() throws Exception {
+		Timeline t = new ImmutableTimeline(3, 3, 2);
+		Onset o = new Onset(9, 2, 0);
+		assertTrue(o.start(t) == 1);
+		assertTrue(o.end(t) == 2);
+		assertTrue(new Onset(-1, 1, 0).start(t) == 7);
+		assertTrue(Onset.getComparator(t).compare(o, new Onset(2, 1, 1)) < 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyRange() throws Exception {
+		new Onset(0, 1, 0).setRange(4, 3);
+	}
+
+}
@@ -0,0 +1,187 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import core.Necklace;
+import core.Pulse;
+import core.PulseNecklace;
+
+public class TestPulseNecklace {
+
+	@Test
+	public void testAdd() {
+		PulseNecklace t = new PulseNecklace();
+		assertTrue(t.size() == 0);
+		t.add(Pulse.REST);
+		t.add(Pulse.REST);
+		t.add(Pulse.REST);
+		t.add(Pulse.ATTACK);
+		t.add(Pulse.ACCENT);
+		assertTrue(t.size() == 5);
+		assertTrue(t.toString().equals("[...xX]"));
+
+		// grows past a single word
+		for (int i = 0; i < 40; i++) {
+			t.add(i % 2 == 0 ? Pulse.ATTACK : Pulse.REST);
+		}
+		assertTrue(t.size() == 45);
+		assertTrue(t.get(5) == Pulse.ATTACK);
+		assertTrue(t.get(43) == Pulse.ATTACK);
+		assertTrue(t.get(-1) == Pulse.REST);
+		assertTrue(t.get(45) == Pulse.REST);
+	}
+
+	@Test
+	public void testAddAtIndexAcrossWords() throws Exception {
+		PulseNecklace t = new PulseNecklace();
+		for (int i = 0; i < 70; i++) {
+			t.add(Pulse.REST);
+		}
+		t.add(Pulse.ATTACK, 0);
+		t.add(Pulse.ACCENT, 33);
+		t.add(Pulse.ATTACK, 64);
+		assertTrue(t.size() == 73);
+		assertTrue(t.get(0) == Pulse.ATTACK);
+		assertTrue(t.get(33) == Pulse.ACCENT);
+		assertTrue(t.get(64) == Pulse.ATTACK);
+		assertTrue(t.get(72) == Pulse.REST);
+	}
+
+	@Test
+	public void testExtendAndShrink() throws Exception {
+		PulseNecklace t = new PulseNecklace();
+		t.add(Pulse.ATTACK);
+		t.add(Pulse.ATTACK);
+		t.add(Pulse.REST);
+		t.add(Pulse.REST);
+		t.extend(0, Pulse.REST, 3);
+		assertTrue(t.toString().equals("[x...x..]"));
+		t.extend(-1, Pulse.ATTACK, 3);
+		assertTrue(t.toString().equals("[x...x..xxx]"));
+
+		// shrink wraps like Necklace.shrink
+		t.shrink(9, 1);
+		assertTrue(t.toString().equals("[..x..xx]"));
+	}
+
+	@Test
+	public void testRotate() throws Exception {
+		PulseNecklace t = new PulseNecklace();
+		Necklace<Pulse> reference = new Necklace<>();
+		for (int i = 0; i < 100; i++) {
+			Pulse p = (i % 3 == 0) ? Pulse.ATTACK : (i % 7 == 0) ? Pulse.ACCENT : Pulse.REST;
+			t.add(p);
+			reference.add(p);
+		}
+		for (int r : new int[] { 1, -1, 31, 32, 33, 64, -65, 99, 250 }) {
+			t.rotateBy(r);
+			reference.rotateBy(r);
+			assertTrue(t.toString().equals(reference.toString()));
+		}
+	}
+
+	@Test
+	public void testEqualsAndHashCode() throws Exception {
+		PulseNecklace t = new PulseNecklace();
+		PulseNecklace tmp = new PulseNecklace(64);
+		for (int i = 0; i < 40; i++) {
+			t.add(i % 4 == 0 ? Pulse.ATTACK : Pulse.REST);
+			tmp.add(i % 4 == 0 ? Pulse.ATTACK : Pulse.REST);
+		}
+		assertTrue(t.equals(tmp));
+		assertTrue(t.hashCode() == tmp.hashCode());
+
+		// removed pulses do not linger in the packed words
+		tmp.add(Pulse.ACCENT);
+		tmp.remove(-1);
+		assertTrue(t.equals(tmp));
+		assertTrue(t.hashCode() == tmp.hashCode());
+
+		tmp.set(Pulse.ACCENT, 0);
+		assertFalse(t.equals(tmp));
+
+		// same pulses in a generic necklace
+		Necklace<Pulse> generic = new Necklace<>();
+		for (Pulse p : t) {
+			generic.add(p);
+		}
+		assertTrue(t.equals(generic));
+	}
+
+	@Test
+	public void testIteratorRemove() throws Exception {
+		PulseNecklace t = new PulseNecklace();
+		for (int i = 0; i < 16; i++) {
+			t.add(i % 2 == 0 ? Pulse.ATTACK : Pulse.REST);
+		}
+		Iterator<Pulse> it = t.iterator();
+		while (it.hasNext()) {
+			if (it.next() == Pulse.REST) {
+				it.remove();
+			}
+		}
+		assertTrue(t.toString().equals("[xxxxxxxx]"));
+	}
+
+	@Test
+	public void testMatchesNecklace() throws Exception {
+		Random random = new Random(16);
+		PulseNecklace t = new PulseNecklace();
+		Necklace<Pulse> reference = new Necklace<>();
+		for (int step = 0; step < 2000; step++) {
+			Pulse p = Pulse.values()[random.nextInt(3)];
+			int index = random.nextInt(200) - 100;
+			switch (random.nextInt(8)) {
+			case 0:
+				t.add(p);
+				reference.add(p);
+				break;
+			case 1:
+				t.add(p, index);
+				reference.add(p, index);
+				break;
+			case 2:
+				if (reference.size() > 0) {
+					assertTrue(t.remove(index) == reference.remove(index));
+				}
+				break;
+			case 3:
+				int span = random.nextInt(5);
+				t.set(p, index, index + span);
+				reference.set(p, index, index + span);
+				break;
+			case 4:
+				if (reference.size() > 0) {
+					int n = random.nextInt(40);
+					t.extend(index, p, n);
+					reference.extend(index, p, n);
+				}
+				break;
+			case 5:
+				int copies = random.nextInt(40);
+				int at = random.nextBoolean() ? reference.size() : index;
+				t.add(p, at, copies);
+				reference.add(p, at, copies);
+				break;
+			case 6:
+				if (reference.size() > 8) {
+					int length = random.nextInt(reference.size() / 2);
+					t.removeRange(index, index + length);
+					reference.removeRange(index, index + length);
+				}
+				break;
+			default:
+				t.rotateBy(index);
+				reference.rotateBy(index);
+			}
+			assertTrue(t.size() == reference.size());
+			assertTrue(t.toString().equals(reference.toString()));
+		}
+	}
+
+}
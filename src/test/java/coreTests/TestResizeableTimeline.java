@@ -0,0 +1,129 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import core.Geometry;
+import core.ImmutableTimeline;
+import core.Onset;
+import core.ResizeableTimeline;
+import core.Timeline;
+import core.TimelineBuilder;
+import core.Timelines;
+
+public class TestResizeableTimeline {
+
+	@Test
+	public void testReplaceOnset() throws Exception {
+		ResizeableTimeline t = new ResizeableTimeline(3, 3, 2);
+		t.replaceOnset(1, 5, true);
+		assertTrue(Geometry.boxNotation(t).equals("[x..X....x.]"));
+		assertTrue(t.getOnset(2).start() == 8);
+
+		// the last onset wraps, so shrinking it moves onset 0
+		t = new TimelineBuilder().addRests(2).addOnsets(3, 3).buildResizeable();
+		assertTrue(Geometry.boxNotation(t).equals("[..x..x..]"));
+		t.replaceOnset(1, 1, false);
+		assertTrue(Geometry.boxNotation(t).equals("[x..x]"));
+		t.replaceOnset(-1, 2, true);
+		assertTrue(Geometry.boxNotation(t).equals("[x..X.]"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReplaceWithNothing() throws Exception {
+		new ResizeableTimeline(3, 3, 2).replaceOnset(0, 0, false);
+	}
+
+	@Test
+	public void testOnsetNumbers() throws Exception {
+		ResizeableTimeline t = new ResizeableTimeline(3, 3, 2);
+		t.insertOnset(0, 1, false);
+		for (int i = 0; i < t.getNumberOfOnsets(); i++) {
+			Onset o = t.getOnset(i);
+			assertTrue(o.id() == i);
+			assertTrue(t.getOnsetNumber(o) == i);
+		}
+		t.removeOnset(t.getOnset(1));
+		assertTrue(Geometry.boxNotation(t).equals("[x...x..x.]"));
+		assertTrue(t.getOnsets().get(1).start() == 4);
+	}
+
+	@Test
+	public void testAgainstImmutable() throws Exception {
+		// both kinds of timeline edit onsets the same way
+		Random random = new Random(23);
+		Timeline expected = new TimelineBuilder().addRests(3).addOnsets(3, 1, 2).buildImmutable();
+		ResizeableTimeline t = new TimelineBuilder().addRests(3).addOnsets(3, 1, 2).buildResizeable();
+		for (int step = 0; step < 5000; step++) {
+			int n = t.getNumberOfPulses();
+			int k = t.getNumberOfOnsets();
+			int duration = 1 + random.nextInt(4);
+			boolean accent = random.nextBoolean();
+			int op = random.nextInt(4);
+			if (n > 80) {
+				TimelineBuilder builder = new TimelineBuilder().addRests(duration).addOnsets(2, 1);
+				expected = builder.buildImmutable();
+				t = builder.buildResizeable();
+			} else if (op == 0 || k < 2) {
+				int pulse = random.nextInt(n + 1);
+				expected = ((ImmutableTimeline) expected).insertOnset(pulse, duration, accent);
+				t.insertOnset(pulse, duration, accent);
+			} else if (op == 1) {
+				int i = random.nextInt(k);
+				expected = ((ImmutableTimeline) expected).removeOnset(i);
+				t.removeOnset(i);
+			} else if (op == 2) {
+				int i = random.nextInt(k);
+				expected = ((ImmutableTimeline) expected).replaceOnset(i, duration, accent);
+				t.replaceOnset(i, duration, accent);
+			} else {
+				expected = ((ImmutableTimeline) expected).addOnset(duration, accent);
+				t.addOnset(duration, accent);
+			}
+			assertSame(expected, t);
+		}
+	}
+
+	@Test
+	public void testRotateAndClone() throws Exception {
+		ResizeableTimeline t = new ResizeableTimeline(3, 3, 4, 2, 4);
+		ResizeableTimeline clone = (ResizeableTimeline) t.clone();
+		clone.addOnset(2);
+		assertTrue(t.getNumberOfPulses() == 16);
+		assertTrue(clone.getNumberOfPulses() == 18);
+		Timeline rotated = Timelines.rotate(t, 5);
+		assertTrue(Geometry.boxNotation(rotated).equals("[.x...x..x..x...x]"));
+		assertTrue(rotated.canonicalRotation().equalsUnderRotation(t));
+		assertTrue(rotated.rotationHashCode() == t.rotationHashCode());
+	}
+
+	private static void assertSame(Timeline expected, Timeline t) {
+		assertTrue(Geometry.boxNotation(t).equals(Geometry.boxNotation(expected)));
+		assertTrue(t.getNumberOfOnsets() == expected.getNumberOfOnsets());
+		int[] a = new int[t.getNumberOfOnsets()];
+		int[] b = new int[t.getNumberOfOnsets()];
+		t.copyOnsetPositions(a);
+		expected.copyOnsetPositions(b);
+		assertArrayEquals(b, a);
+		for (int i = 0; i < t.getNumberOfOnsets(); i++) {
+			Onset o = t.getOnset(i);
+			Onset e = expected.getOnset(i);
+			assertTrue(o.start() == e.start() && o.duration() == e.duration() && o.isAccent() == e.isAccent());
+			assertTrue(t.getOnsetNumber(o) == i);
+		}
+		int n = t.getNumberOfPulses();
+		for (int p = 0; p < n; p++) {
+			assertTrue(t.pulseAt(p) == expected.pulseAt(p));
+			int i = t.onsetAt(p);
+			assertTrue(i == expected.onsetAt(p));
+			if (i >= 0) {
+				assertTrue(Math.floorMod(p - t.onsetStart(i), n) < t.getOnset(i).duration());
+				assertTrue(t.onsetStart(i) == expected.onsetStart(i));
+			}
+		}
+	}
+
+}
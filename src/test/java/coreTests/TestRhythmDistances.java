@@ -0,0 +1,136 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import core.ImmutableTimeline;
+import core.Timeline;
+import core.Timelines;
+import core.distance.OnsetPositions;
+import core.distance.RhythmDistances;
+
+public class TestRhythmDistances {
+
+	private static final OnsetPositions SHIKO = new OnsetPositions().load(16, 0, 4, 6, 10, 12);
+	private static final OnsetPositions SON = new OnsetPositions().load(16, 0, 3, 6, 10, 12);
+	private static final OnsetPositions RUMBA = new OnsetPositions().load(16, 0, 3, 7, 10, 12);
+
+	@Test
+	public void testClaves() throws Exception {
+		assertTrue(RhythmDistances.hamming(SHIKO, SON) == 2);
+		assertTrue(RhythmDistances.swap(SHIKO, SON) == 1);
+		assertTrue(RhythmDistances.swap(SHIKO, RUMBA) == 2);
+		assertTrue(RhythmDistances.directedSwap(SON, RUMBA) == 1);
+		assertEquals(4 / 3.0 + 3 / 2.0 - 2, RhythmDistances.intervalDifference(SHIKO, SON), 1e-9);
+		assertTrue(RhythmDistances.intervalDifference(SON, SON) == 0);
+		// shiko and son differ on pulses 0 to 5 with intervals 4,4,4,4,2,2 against 3
+		assertTrue(RhythmDistances.chronotonic(SHIKO, SON) == 6);
+	}
+
+	@Test
+	public void testTimelines() throws Exception {
+		Timeline son = new ImmutableTimeline(3, 3, 4, 2, 4);
+		Timeline shiko = new ImmutableTimeline(4, 2, 4, 2, 4);
+		assertTrue(RhythmDistances.SWAP.distance(son, shiko) == 1);
+		assertTrue(RhythmDistances.HAMMING.distance(son, shiko) == 2);
+		assertTrue(RhythmDistances.DIRECTED_SWAP.distance(Timelines.euclidean(3, 8), Timelines.euclidean(8, 8)) == 5);
+	}
+
+	@Test
+	public void testDirectedSwapMatchesBruteForce() throws Exception {
+		Random random = new Random(9);
+		OnsetPositions a = new OnsetPositions();
+		OnsetPositions b = new OnsetPositions();
+		for (int trial = 0; trial < 500; trial++) {
+			int n = 4 + random.nextInt(10);
+			a.load(n, randomPositions(random, n, 1 + random.nextInt(Math.min(n, 6))));
+			b.load(n, randomPositions(random, n, 1 + random.nextInt(a.onsets())));
+			int expected = bruteForce(a, b);
+			assertTrue(RhythmDistances.directedSwap(a, b) == expected);
+			assertTrue(RhythmDistances.directedSwap(b, a) == expected);
+			if (a.onsets() == b.onsets()) {
+				assertTrue(RhythmDistances.swap(a, b) == expected);
+			}
+			assertTrue(RhythmDistances.chronotonic(a, b) == chronotonic(a, b));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDifferentPulses() throws Exception {
+		RhythmDistances.hamming(SON, new OnsetPositions().load(12, 0, 3));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSwapNeedsSameOnsets() throws Exception {
+		RhythmDistances.swap(SON, new OnsetPositions().load(16, 0, 3));
+	}
+
+	private static int[] randomPositions(Random random, int n, int k) {
+		boolean[] chosen = new boolean[n];
+		for (int c = 0; c < k;) {
+			int p = random.nextInt(n);
+			if (!chosen[p]) {
+				chosen[p] = true;
+				c++;
+			}
+		}
+		int[] positions = new int[k];
+		for (int p = 0, i = 0; p < n; p++) {
+			if (chosen[p]) {
+				positions[i++] = p;
+			}
+		}
+		return positions;
+	}
+
+	/**
+	 * Tries every map from the onsets of a onto the onsets of b.
+	 */
+	private static int bruteForce(OnsetPositions a, OnsetPositions b) {
+		int ka = a.onsets();
+		int kb = b.onsets();
+		int best = Integer.MAX_VALUE;
+		int total = (int) Math.pow(kb, ka);
+		for (int map = 0; map < total; map++) {
+			boolean[] hit = new boolean[kb];
+			int cost = 0;
+			for (int i = 0, m = map; i < ka; i++, m /= kb) {
+				hit[m % kb] = true;
+				cost += Math.abs(a.position(i) - b.position(m % kb));
+			}
+			boolean onto = true;
+			for (boolean h : hit) {
+				onto &= h;
+			}
+			if (onto) {
+				best = Math.min(best, cost);
+			}
+		}
+		return best;
+	}
+
+	private static long chronotonic(OnsetPositions a, OnsetPositions b) {
+		long area = 0;
+		for (int x = 0; x < a.pulses(); x++) {
+			area += Math.abs(intervalAt(a, x) - intervalAt(b, x));
+		}
+		return area;
+	}
+
+	private static int intervalAt(OnsetPositions p, int x) {
+		int i = p.onsets() - 1;
+		while (i >= 0 && p.position(i) > x) {
+			i--;
+		}
+		return intervalOf(p, i < 0 ? p.onsets() - 1 : i);
+	}
+
+	private static int intervalOf(OnsetPositions p, int i) {
+		int next = i + 1 < p.onsets() ? p.position(i + 1) : p.position(0) + p.pulses();
+		return next - p.position(i);
+	}
+
+}
@@ -0,0 +1,102 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import core.ImmutableTimeline;
+import core.Timeline;
+import core.Timelines;
+import core.distance.RhythmDistances;
+import core.distance.RotationIndex;
+import core.distance.RotationIndex.Neighbour;
+
+public class TestRotationIndex {
+
+	@Test
+	public void testRotationsAreEqual() throws Exception {
+		RotationIndex index = new RotationIndex(8);
+		for (int r = 0; r < 8; r++) {
+			index.add(Timelines.euclidean(3, 8, r));
+		}
+		index.add(Timelines.euclidean(4, 8));
+		assertTrue(index.size() == 9);
+		List<Neighbour> nearest = index.nearest(new ImmutableTimeline(2, 3, 3), 8);
+		assertTrue(nearest.size() == 8);
+		for (Neighbour n : nearest) {
+			assertTrue(n.distance() == 0);
+		}
+		assertTrue(index.within(new ImmutableTimeline(2, 3, 3), 0).size() == 8);
+		assertTrue(index.nearest(Timelines.euclidean(4, 8, 3), 1).get(0).distance() == 0);
+	}
+
+	@Test
+	public void testMatchesLinearScan() throws Exception {
+		for (int n : new int[] { 12, 64, 70 }) {
+			Random random = new Random(n);
+			List<Timeline> corpus = new ArrayList<>();
+			for (int i = 0; i < 300; i++) {
+				corpus.add(randomTimeline(random, n));
+			}
+			RotationIndex index = RotationIndex.build(n, corpus);
+			for (int q = 0; q < 30; q++) {
+				Timeline query = randomTimeline(random, n);
+				List<Integer> expected = new ArrayList<>();
+				for (Timeline t : corpus) {
+					expected.add((int) RhythmDistances.ROTATIONAL_HAMMING.distance(query, t));
+				}
+				Collections.sort(expected);
+				List<Neighbour> nearest = index.nearest(query, 10);
+				assertTrue(nearest.size() == 10);
+				for (int i = 0; i < 10; i++) {
+					assertTrue(nearest.get(i).distance() == expected.get(i));
+					assertTrue(nearest.get(i).distance() == (int) RhythmDistances.ROTATIONAL_HAMMING.distance(query, nearest.get(i).timeline()));
+				}
+				int radius = expected.get(20);
+				int count = 0;
+				while (count < expected.size() && expected.get(count) <= radius) {
+					count++;
+				}
+				assertTrue(index.within(query, radius).size() == count);
+			}
+		}
+	}
+
+	@Test
+	public void testRotationalHamming() throws Exception {
+		Timeline son = new ImmutableTimeline(3, 3, 4, 2, 4);
+		Timeline rumba = new ImmutableTimeline(3, 4, 3, 2, 4);
+		assertTrue(RhythmDistances.HAMMING.distance(son, rumba) == 2);
+		assertTrue(RhythmDistances.ROTATIONAL_HAMMING.distance(son, rumba) == 2);
+		assertTrue(RhythmDistances.ROTATIONAL_HAMMING.distance(son, Timelines.rotate(son, 5)) == 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongPulses() throws Exception {
+		new RotationIndex(8).add(Timelines.euclidean(3, 12));
+	}
+
+	private static Timeline randomTimeline(Random random, int n) {
+		int k = 1 + random.nextInt(n / 3);
+		List<Integer> cuts = new ArrayList<>();
+		for (int i = 1; i < n; i++) {
+			cuts.add(i);
+		}
+		Collections.shuffle(cuts, random);
+		List<Integer> chosen = new ArrayList<>(cuts.subList(0, k - 1));
+		chosen.add(0);
+		chosen.add(n);
+		Collections.sort(chosen);
+		int[] ioi = new int[k];
+		for (int i = 0; i < k; i++) {
+			ioi[i] = chosen.get(i + 1) - chosen.get(i);
+		}
+		return Timelines.rotate(new ImmutableTimeline(ioi), random.nextInt(n));
+	}
+
+}
@@ -0,0 +1,98 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import core.ImmutableTimeline;
+import core.Timeline;
+import core.Timelines;
+import core.metrics.Meter;
+import core.metrics.Syncopation;
+
+public class TestSyncopation {
+
+	private static final double DELTA = 1e-9;
+
+	private final Timeline son = new ImmutableTimeline(3, 3, 4, 2, 4);
+	private final Timeline fourOnTheFloor = Timelines.euclidean(4, 16);
+
+	@Test
+	public void testMeter() throws Exception {
+		Meter meter = Meter.COMMON_TIME;
+		assertTrue(meter.getPulsesPerBar() == 16);
+		assertTrue(meter.getBeatsPerBar() == 4);
+		assertTrue(meter.getPulsesPerBeat() == 4);
+		assertTrue(meter.depth() == 3);
+		assertTrue(meter.equals(Meter.of(4, 2, 2)));
+		assertTrue(meter.hashCode() == Meter.of(4, 2, 2).hashCode());
+		assertFalse(meter.equals(Meter.TWELVE_EIGHT));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadMeter() throws Exception {
+		Meter.of(4, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPartialBar() throws Exception {
+		Syncopation.longuetHigginsLee(Timelines.euclidean(3, 8), Meter.COMMON_TIME);
+	}
+
+	@Test
+	public void testSon() throws Exception {
+		assertTrue(Syncopation.longuetHigginsLee(son, Meter.COMMON_TIME) == 3);
+		assertTrue(Syncopation.keith(son) == 6);
+		assertTrue(Syncopation.offBeatness(son) == 1);
+		assertEquals(2.8, Syncopation.weightedNoteToBeatDistance(son, Meter.COMMON_TIME), DELTA);
+		assertTrue(Syncopation.metricalComplexity(son, Meter.COMMON_TIME) == 3);
+	}
+
+	@Test
+	public void testUnsyncopated() throws Exception {
+		assertTrue(Syncopation.longuetHigginsLee(fourOnTheFloor, Meter.COMMON_TIME) == 0);
+		assertTrue(Syncopation.keith(fourOnTheFloor) == 0);
+		assertTrue(Syncopation.offBeatness(fourOnTheFloor) == 0);
+		assertEquals(0, Syncopation.weightedNoteToBeatDistance(fourOnTheFloor, Meter.COMMON_TIME), DELTA);
+		assertTrue(Syncopation.metricalComplexity(fourOnTheFloor, Meter.COMMON_TIME) == 0);
+
+		Timeline empty = new ImmutableTimeline(16).removeOnset(0);
+		assertTrue(Syncopation.longuetHigginsLee(empty, Meter.COMMON_TIME) == 0);
+		assertEquals(0, Syncopation.weightedNoteToBeatDistance(empty, Meter.COMMON_TIME), DELTA);
+		assertTrue(Syncopation.metricalComplexity(empty, Meter.COMMON_TIME) == 0);
+	}
+
+	@Test
+	public void testKeithOnOddLengths() throws Exception {
+		// a whole cycle of 12 is measured against 8 and ends off it
+		assertTrue(Syncopation.keith(Timelines.parseBoxNotation("x...........")) == 1);
+		assertTrue(Syncopation.keith(Timelines.parseBoxNotation("x...x.......")) == 3);
+	}
+
+	@Test
+	public void testNoteToBeatWeights() throws Exception {
+		// held past the next beat and up to the one after counts double
+		Timeline acrossOne = Timelines.parseBoxNotation("x.x....x........");
+		assertEquals(8.0 / 3, Syncopation.weightedNoteToBeatDistance(acrossOne, Meter.COMMON_TIME), DELTA);
+
+		// held across two beats counts once
+		Timeline acrossTwo = Timelines.parseBoxNotation("x.x.........x...");
+		assertEquals(2.0 / 3, Syncopation.weightedNoteToBeatDistance(acrossTwo, Meter.COMMON_TIME), DELTA);
+	}
+
+	@Test
+	public void testSeveralBars() throws Exception {
+		// two bars of son score twice as much, and the meter serves both lengths
+		Timeline twoBars = new ImmutableTimeline(3, 3, 4, 2, 4, 3, 3, 4, 2, 4);
+		assertTrue(Syncopation.longuetHigginsLee(twoBars, Meter.COMMON_TIME) == 6);
+		assertTrue(Syncopation.keith(twoBars) == 12);
+		assertEquals(2.8, Syncopation.weightedNoteToBeatDistance(twoBars, Meter.COMMON_TIME), DELTA);
+		assertTrue(Syncopation.metricalComplexity(twoBars, Meter.COMMON_TIME) == 6);
+		assertTrue(Syncopation.longuetHigginsLee(son, Meter.COMMON_TIME) == 3);
+
+		// a note held over the bar line
+		Timeline anticipated = Timelines.parseBoxNotation("....x...x......x");
+		assertTrue(Syncopation.longuetHigginsLee(anticipated, Meter.COMMON_TIME) == 3);
+	}
+
+}
@@ -0,0 +1,63 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import core.Geometry;
+import core.Pulse;
+import core.ResizeableTimeline;
+import core.Timeline;
+import core.TimelineBuilder;
+
+public class TestTimelineBuilder {
+
+	@Test
+	public void testBuild() throws Exception {
+		TimelineBuilder builder = new TimelineBuilder().addOnsets(3, 3).addOnset(2, true);
+		for (Timeline t : new Timeline[] { builder.buildImmutable(), builder.buildResizeable() }) {
+			assertTrue(t.getNumberOfPulses() == 8);
+			assertTrue(t.getNumberOfOnsets() == 3);
+			assertTrue(Geometry.boxNotation(t).equals("[x..x..X.]"));
+			assertTrue(t.getOnset(2).duration() == 2);
+		}
+	}
+
+	@Test
+	public void testLeadingRests() throws Exception {
+		TimelineBuilder builder = new TimelineBuilder();
+		for (char c : "..x..x.x".toCharArray()) {
+			builder.addPulse(c == '.' ? Pulse.REST : Pulse.ATTACK);
+		}
+		for (Timeline t : new Timeline[] { builder.buildImmutable(), builder.buildResizeable() }) {
+			assertTrue(Geometry.boxNotation(t).equals("[..x..x.x]"));
+			assertTrue(t.getOnset(0).start() == 2);
+			// the last onset wraps round to the first
+			assertTrue(t.getOnset(2).duration() == 3);
+			assertTrue(Geometry.interOnsetIntervalString(t).equals("[3-2-3]"));
+		}
+		assertTrue(Geometry.boxNotation(new TimelineBuilder().addRests(4).buildImmutable()).equals("[....]"));
+	}
+
+	@Test
+	public void testLongTimeline() throws Exception {
+		int[] ioi = new int[20000];
+		for (int i = 0; i < ioi.length; i++) {
+			ioi[i] = 1 + i % 4;
+		}
+		ResizeableTimeline t = new ResizeableTimeline(ioi);
+		assertTrue(t.getNumberOfPulses() == 50000);
+		assertTrue(t.getNumberOfOnsets() == 20000);
+		assertTrue(t.getOnset(19999).start() == 50000 - 4);
+		int[] intervals = Geometry.interOnsetIntervalArray(t);
+		for (int i = 0; i < ioi.length; i++) {
+			assertTrue(intervals[i] == ioi[i]);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadDuration() throws Exception {
+		new ResizeableTimeline(3, 0, 2);
+	}
+
+}
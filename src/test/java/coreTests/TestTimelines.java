@@ -0,0 +1,182 @@
+package coreTests;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import core.Geometry;
+import core.ImmutableTimeline;
+import core.ResizeableTimeline;
+import core.Timeline;
+import core.Timelines;
+
+public class TestTimelines {
+
+	@Test
+	public void testEuclidean() throws Exception {
+		Timeline tresillo = Timelines.euclidean(3, 8);
+		assertTrue(tresillo.getNecklace().toString().equals("[x..x..x.]"));
+		assertTrue(Geometry.interOnsetIntervalString(tresillo).equals("[3-3-2]"));
+
+		// a rotation of the cinquillo
+		Timeline cinquillo = Timelines.euclidean(5, 8);
+		assertTrue(cinquillo.getNecklace().toString().equals("[x.x.xx.x]"));
+		assertTrue(cinquillo.equalsUnderRotation(Timelines.euclidean(5, 8, 3)));
+
+		Timeline rotated = Timelines.euclidean(3, 8, -1);
+		assertTrue(rotated.getNecklace().toString().equals("[..x..x.x]"));
+		assertTrue(Timelines.euclidean(3, 8, 7) == rotated);
+
+		assertTrue(Timelines.euclidean(0, 4).getNecklace().toString().equals("[....]"));
+		assertTrue(Timelines.euclidean(4, 4).getNecklace().toString().equals("[xxxx]"));
+		assertTrue(Timelines.euclidean(4, 12).getNecklace().toString().equals("[x..x..x..x..]"));
+	}
+
+	@Test
+	public void testEuclideanIsCached() throws Exception {
+		assertTrue(Timelines.euclidean(5, 16) == Timelines.euclidean(5, 16));
+		assertTrue(Timelines.euclidean(5, 16, 16) == Timelines.euclidean(5, 16));
+	}
+
+	@Test
+	public void testRotateKeepsOnsets() throws Exception {
+		Timeline rotated = Timelines.rotate(Timelines.euclidean(3, 8), 1);
+		assertTrue(rotated.getNumberOfOnsets() == 3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEuclideanTooManyOnsets() throws Exception {
+		Timelines.euclidean(9, 8);
+	}
+
+	@Test
+	public void testParseBoxNotation() throws Exception {
+		for (String box : new String[] { "[x..x..x.]", "[..X.x..x.x..x...]", "[....]", "[]", "[X]" }) {
+			Timeline t = Timelines.parseBoxNotation(box);
+			assertTrue(Geometry.boxNotation(t).equals(box));
+			assertTrue(t.getNecklace().toString().equals(box));
+		}
+		Timeline tresillo = Timelines.parseBoxNotation("x..x..x.");
+		assertTrue(tresillo.getNumberOfOnsets() == 3);
+		assertTrue(Geometry.interOnsetIntervalString(tresillo).equals("[3-3-2]"));
+		assertTrue(Geometry.interOnsetIntervalString(Timelines.parseBoxNotation("..x..x.x"))
+				.equals("[3-2-3]"));
+	}
+
+	@Test
+	public void testParseIoi() throws Exception {
+		for (String ioi : new String[] { "[3-3-2]", "[3-3-4-2-4]", "[16]", "[]", "[120-1]" }) {
+			Timeline t = Timelines.parseIoi(ioi);
+			assertTrue(Geometry.interOnsetIntervalString(t).equals(ioi));
+			assertTrue(Geometry.interOnsetIntervalString(t, new StringBuilder("ioi ")).toString()
+					.equals("ioi " + ioi));
+		}
+		assertTrue(Geometry.boxNotation(Timelines.parseIoi("3-3-2")).equals("[x..x..x.]"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseBadBox() throws Exception {
+		Timelines.parseBoxNotation("[x..o..x.]");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseBadIoi() throws Exception {
+		Timelines.parseIoi("[3--2]");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseZeroIoi() throws Exception {
+		Timelines.parseIoi("3-0");
+	}
+
+	@Test
+	public void testApplyRhythmicContour() throws Exception {
+		Timeline t = Timelines.applyRhythmicContour(Timelines.euclidean(3, 8), Arrays.asList(1, -1, 0));
+		assertTrue(Geometry.boxNotation(t).equals("[x...x.x.]"));
+
+		// the first onset stays where it was
+		t = Timelines.applyRhythmicContour(Timelines.euclidean(3, 8, 7), Arrays.asList(2, -1, 0));
+		assertTrue(Geometry.boxNotation(t).equals("[..x....xx]"));
+
+		// unless the timeline shrinks to that pulse or before it
+		t = Timelines.applyRhythmicContour(Timelines.parseBoxNotation("..........x.x..."), new int[] { 0, -10 });
+		assertTrue(t.getNumberOfPulses() == 6);
+		assertTrue(Geometry.boxNotation(t).equals("[x...x.]"));
+		assertTrue(Arrays.equals(Geometry.interOnsetIntervalArray(t), new int[] { 4, 2 }));
+		assertTrue(Geometry.intervalVector(t)[2] == 1);
+
+		// accents follow their onsets
+		t = Timelines.applyRhythmicContour(Timelines.parseBoxNotation("x..X..x."), new int[] { -1, 2, 0 });
+		assertTrue(Geometry.boxNotation(t).equals("[x.X....x.]"));
+
+		List<Timeline> batch = Timelines.applyRhythmicContour(
+				Arrays.asList(Timelines.euclidean(3, 8), Timelines.euclidean(3, 7), Timelines.euclidean(3, 3)),
+				Arrays.asList(1, 0, 1));
+		assertTrue(Geometry.boxNotation(batch.get(0)).equals("[x...x..x..]"));
+		assertTrue(Geometry.boxNotation(batch.get(1)).equals("[x...x.x..]"));
+		assertTrue(Geometry.boxNotation(batch.get(2)).equals("[x.xx.]"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testApplyRhythmicContourTooShort() throws Exception {
+		Timelines.applyRhythmicContour(Timelines.euclidean(3, 8), Arrays.asList(0, -3, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testApplyShortRhythmicContour() throws Exception {
+		Timelines.applyRhythmicContour(Timelines.euclidean(3, 8), Arrays.asList(0, 1));
+	}
+
+	@Test
+	public void testRotate() throws Exception {
+		Timeline son = Timelines.parseBoxNotation("x..x..x...x.x...");
+		Timeline rotated = Timelines.rotate(son, 3);
+		assertTrue(Geometry.boxNotation(rotated).equals("[...x..x..x...x.x]"));
+		assertTrue(Geometry.boxNotation(Timelines.rotate(rotated, -3)).equals(Geometry.boxNotation(son)));
+
+		// the onsets of a mutable timeline are copied, not moved
+		Timeline mutable = new ResizeableTimeline(3, 3, 4, 2, 4);
+		rotated = Timelines.rotate(mutable, 3);
+		assertTrue(Geometry.boxNotation(rotated).equals("[...x..x..x...x.x]"));
+		assertTrue(Geometry.boxNotation(mutable).equals("[x..x..x...x.x...]"));
+		assertTrue(rotated.getOnsets().get(0).start() == 3);
+		assertTrue(mutable.getOnsets().get(0).start() == 0);
+	}
+
+	@Test
+	public void testSetOperations() throws Exception {
+		Timeline tresillo = Timelines.parseBoxNotation("X..x..x.");
+		Timeline half = Timelines.parseBoxNotation("x...X...");
+		assertTrue(Geometry.boxNotation(Timelines.union(tresillo, half)).equals("[X..xX.x.]"));
+		assertTrue(Geometry.boxNotation(Timelines.intersection(tresillo, half)).equals("[X.......]"));
+		assertTrue(Geometry.boxNotation(Timelines.difference(tresillo, half)).equals("[...x..x.]"));
+		assertTrue(Geometry.boxNotation(Timelines.difference(half, tresillo)).equals("[....X...]"));
+		assertTrue(Timelines.intersection(Timelines.difference(tresillo, half), half).getNumberOfOnsets() == 0);
+
+		// different lengths meet on their least common multiple
+		Timeline duple = Timelines.parseBoxNotation("x.x.");
+		Timeline triple = Timelines.parseBoxNotation("x.x");
+		assertTrue(Geometry.boxNotation(Timelines.union(duple, triple)).equals("[x.....x.x...]"));
+		assertTrue(Geometry.boxNotation(Timelines.intersection(duple, triple)).equals("[x...........]"));
+		assertTrue(Geometry.boxNotation(Timelines.union(tresillo, half, 16)).equals("[X.....x.X...x...]"));
+
+		// long timelines span several words, and the first onset may be late
+		Timeline sparse = Timelines.euclidean(5, 200, 3);
+		Timeline dense = Timelines.euclidean(150, 300, 1);
+		Timeline union = Timelines.union(sparse, dense);
+		assertTrue(union.getNumberOfPulses() == 600);
+		assertTrue(union.getNumberOfOnsets() == 155);
+		assertTrue(Timelines.difference(union, dense).getNumberOfOnsets() == 5);
+		assertTrue(Geometry.interOnsetIntervalArray(Timelines.intersection(union, sparse)).length == 5);
+		assertTrue(Timelines.union(new ImmutableTimeline(), tresillo).getNumberOfPulses() == 8);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetOperationOnBadGrid() throws Exception {
+		Timelines.union(Timelines.euclidean(3, 8), Timelines.euclidean(2, 4), 12);
+	}
+
+}